@@ -9,13 +9,50 @@ import java.util.Set;
 public interface Assignment {
     <TValue> TValue getValue(String name);
 
+    <TValue> TValue getValue(int variable);
+
+    /***
+     * Returns the int code of the value of the variable, see toInt
+     */
+    int getInt(int variable);
+
+    boolean isAssigned(int variable);
+
     int size();
 
+    int getUnassignedCount();
+
+    int getUnassignedVariable(int i);
+
     Map<String, Object> getValues();
 
     Set<String> getAssignedVariables();
 
     Assignment reset(String name);
 
+    Assignment reset(int variable);
+
     Assignment set(String name, Object value);
-}
\ No newline at end of file
+
+    Assignment set(int variable, Object value);
+
+    /***
+     * Int code of a value used by the compiled constraints,
+     * integers map to themselves, characters to their code and booleans to 1/0
+     */
+    static int toInt(Object value){
+        if(value instanceof Integer){
+            return (Integer)value;
+        } else if(value instanceof Character){
+            return (Character)value;
+        } else if(value instanceof Boolean){
+            return (Boolean)value ? 1 : 0;
+        }
+
+        return 0;
+    }
+
+    static boolean isIntCoded(Class<?> type){
+        return type == Integer.class || type == Character.class || type == Boolean.class;
+    }
+}
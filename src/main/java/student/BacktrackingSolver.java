@@ -1,129 +1,628 @@
 package student;
 
 import student.algorithm.*;
-import student.constraints.Constraint;
 
+import java.math.BigInteger;
 import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 public class BacktrackingSolver implements Solver {
-    private final CSP csp;
-    private final Map<String, Set<Object>> domains;
-    private final List<String> variables;
-    private final Collection<Constraint> constraints;
+    private final CompiledCSP csp;
+    private final int variableCount;
     private final ConstraintEvaluator constraintEvaluator;
-    private final AC3 ac3;
+    private final SolverConfiguration configuration;
     private final BinaryConstraintLookup binaryConstraintLookup;
-    private final ForwardChecking forwardChecking;
-    private final VariableOrderHeuristic variableOrderHeuristic;
-    private final ValueOrderHeuristic valueOrderHeuristic;
+    private final BinarySupports binarySupports;
+    private final PropagatorFactory propagatorFactory;
+    private volatile boolean isCancelled;
 
     public BacktrackingSolver(CSP csp, String valueHeuristic, String variableHeuristic) {
-        this.csp = prepareCSP(csp);
-        this.variables = csp.getVariables();
-        this.domains = csp.getDomains();
-        this.constraints = csp.getConstraints();
-        this.constraintEvaluator = new ConstraintEvaluator(this.constraints);
-
-        // For speed of the algorithm, we will only consider the binary constraints
-        this.binaryConstraintLookup = new BinaryConstraintLookup(filterBinaryConstraints(this.constraints));
-        this.ac3 = new AC3(this.variables, binaryConstraintLookup);
-        this.forwardChecking = new ForwardChecking(this.binaryConstraintLookup);
-
-        ValueOrderHeuristicFactory valueOrderHeuristicFactory = new ValueOrderHeuristicFactory(csp, this.forwardChecking);
-        VariableOrderHeuristicFactory variableOrderHeuristicFactory = new VariableOrderHeuristicFactory(csp);
-        this.valueOrderHeuristic = valueOrderHeuristicFactory.create(valueHeuristic);
-        this.variableOrderHeuristic = variableOrderHeuristicFactory.create(variableHeuristic);
-    }
-
-    private List<Constraint> filterBinaryConstraints(Collection<Constraint> constraints){
-        List<Constraint> binaryConstraints = new ArrayList<>();
-        for(Constraint consr: constraints){
-            if(consr.getScope().size() == 2){
+        this(csp, new SolverConfiguration(valueHeuristic, variableHeuristic));
+    }
+
+    public BacktrackingSolver(CSP csp, SolverConfiguration configuration) {
+        this(new CompiledCSP(csp), configuration);
+    }
+
+    /***
+     * Creates a solver of an already compiled CSP, the compiled CSP can be shared by several solvers
+     */
+    public BacktrackingSolver(CompiledCSP csp, SolverConfiguration configuration) {
+        this(csp, createBinaryConstraintLookup(csp), configuration);
+    }
+
+    private BacktrackingSolver(CompiledCSP csp, BinaryConstraintLookup binaryConstraintLookup,
+                               SolverConfiguration configuration) {
+        this(csp, binaryConstraintLookup, new BinarySupports(csp, binaryConstraintLookup), configuration);
+    }
+
+    /***
+     * Creates a solver that shares the read-only tables of the binary constraints with other solvers
+     * of the same compiled CSP, see createBinaryConstraintLookup
+     */
+    BacktrackingSolver(CompiledCSP csp, BinaryConstraintLookup binaryConstraintLookup,
+                       BinarySupports binarySupports, SolverConfiguration configuration) {
+        this.configuration = configuration;
+        this.csp = csp;
+        this.variableCount = this.csp.getVariableCount();
+        this.constraintEvaluator = new ConstraintEvaluator(this.csp);
+        this.binaryConstraintLookup = binaryConstraintLookup;
+        this.binarySupports = binarySupports;
+        this.propagatorFactory = new PropagatorFactory(this.csp);
+
+        // Rejects unknown heuristic names at once, every search creates its own heuristics
+        new ValueOrderHeuristicFactory(this.csp, null).create(configuration.getValueHeuristic());
+        new VariableOrderHeuristicFactory(this.csp, null).create(configuration.getVariableHeuristic());
+    }
+
+    /***
+     * Returns the lookup of the binary constraints of the CSP, for speed of the algorithm
+     * forward checking and AC3 only consider the binary constraints
+     */
+    static BinaryConstraintLookup createBinaryConstraintLookup(CompiledCSP csp){
+        List<Integer> binaryConstraints = new ArrayList<>();
+        for(int consr = 0; consr < csp.getConstraintCount(); ++consr){
+            if(csp.getScope(consr).length == 2){
                 binaryConstraints.add(consr);
             }
         }
 
-        return binaryConstraints;
-    }
-
-    private CSP prepareCSP(CSP csp) {
-        return csp;
+        return new BinaryConstraintLookup(csp, binaryConstraints);
     }
 
     public List<Solution> solve() {
-        return backtracking();
-    }
+        if(configuration.getParallelism() > 1){
+            return parallelBacktracking();
+        }
 
-    private List<Solution> backtracking()
-    {
         List<Solution> solutions = new ArrayList<>();
-        Assignment assignment = new StaticAssignment();
-        Domain domain = new Domain(this.domains);
-        recursiveBacktracking(solutions, assignment, domain);
+        iterator().forEachRemaining(solutions::add);
         return solutions;
     }
 
-    private boolean isEmptyDomain(Domain domain, Collection<String> unassignedVariables){
-        for(String var : unassignedVariables){
-            if(domain.get(var).size() == 0){
-                return true;
-            }
+    /***
+     * Lazy sequential search, the search stops between the solutions and continues when the next one is pulled.
+     * The parallel mode finds all solutions before the stream returns the first one.
+     * Only the sequential search restarts, the parallel one and count ignore the restart schedule.
+     */
+    @Override
+    public Stream<Solution> stream() {
+        if(configuration.getParallelism() > 1){
+            return parallelBacktracking().stream();
         }
 
-        return false;
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator(),
+                Spliterator.ORDERED | Spliterator.NONNULL), false);
     }
 
-    private List<String> getUnassignedVariables(Assignment assignment){
-        Set<String> assignedVariables = assignment.getAssignedVariables();
-        List<String> unassigned = new ArrayList<>();
-        for(String var : variables){
-            if(!assignedVariables.contains(var)){
-                unassigned.add(var);
-            }
+    /***
+     * Lazy sequential search, see stream
+     */
+    public Iterator<Solution> iterator(){
+        return new SolutionIterator();
+    }
+
+    /***
+     * Counts the solutions without creating them.
+     * Once the unassigned variables are independent, the product of their domain sizes is added
+     * instead of enumerating their values.
+     */
+    public BigInteger count(){
+        SearchState state = createState();
+        SolutionCounter counter = new SolutionCounter();
+        if(state.isConsistent){
+            recursiveCount(counter, state);
         }
 
-        return unassigned;
+        return counter.get();
     }
 
-    private void recursiveBacktracking(List<Solution> solutions, Assignment assignment, Domain domains)
-    {
-        if(assignment.size() == variables.size()){
-            solutions.add(new Solution(assignment.getValues()));
+    private void recursiveCount(SolutionCounter counter, SearchState state){
+        Assignment assignment = state.assignment;
+        Domain domains = state.domains;
+        if(isCancelled){
+            return;
+        }
+
+        if(assignment.size() == variableCount){
+            counter.add(1);
+            return;
+        } else if(state.constraintEvaluator.isIndependent(assignment, domains)){
+            counter.addProduct(assignment, domains);
             return;
         }
 
-        String var = this.variableOrderHeuristic.selectVariable(assignment, domains);
-        Set<Object> domain = domains.get(var);
+        int var = state.variableOrderHeuristic.selectVariable(assignment, domains);
+        int mark = domains.mark();
+        // The order of the values does not change the count
+        for(int value : domains.values(var)){
+            if(assign(state, var, value)){
+                recursiveCount(counter, state);
+            }
 
+            domains.restore(mark);
+            state.constraintEvaluator.unassign(var);
+            assignment.reset(var);
+        }
+    }
 
-        if(domain.size() > 0) {
-            List<Object> domainOrdered = this.valueOrderHeuristic.orderValues(var, domains, assignment);
-            Collection<String> unassignedVariables = null;
+    /***
+     * Sum of the counts kept in a long until it overflows
+     */
+    private static class SolutionCounter {
+        private long count;
+        private BigInteger overflow = BigInteger.ZERO;
 
-            for (Object value : domainOrdered) {
-                assignment = assignment.set(var, value);
-                unassignedVariables = (unassignedVariables == null)?
-                        getUnassignedVariables(assignment) : unassignedVariables;
+        void add(long value){
+            try {
+                count = Math.addExact(count, value);
+            } catch (ArithmeticException e) {
+                overflow = overflow.add(BigInteger.valueOf(count)).add(BigInteger.valueOf(value));
+                count = 0;
+            }
+        }
+
+        void addProduct(Assignment assignment, Domain domains){
+            long product = 1;
+            BigInteger largeProduct = null;
+            for(int i = 0; i < assignment.getUnassignedCount(); ++i){
+                int size = domains.size(assignment.getUnassignedVariable(i));
+                if(largeProduct == null && product <= Long.MAX_VALUE / Math.max(size, 1)){
+                    product *= size;
+                } else {
+                    largeProduct = (largeProduct == null ? BigInteger.valueOf(product) : largeProduct)
+                            .multiply(BigInteger.valueOf(size));
+                }
+            }
+
+            if(largeProduct == null){
+                add(product);
+            } else {
+                overflow = overflow.add(largeProduct);
+            }
+        }
+
+        BigInteger get(){
+            return overflow.add(BigInteger.valueOf(count));
+        }
+    }
 
-                Domain newDomains = domains.inherit();
-                if(this.forwardChecking.execute(assignment, var, newDomains, unassignedVariables) < 0){
-                    // Empty domain
-                    assignment = assignment.reset(var);
+    /***
+     * Stops a running search, solve then returns the solutions found so far
+     */
+    public void cancel(){
+        isCancelled = true;
+    }
+
+    public boolean isCancelled(){
+        return isCancelled;
+    }
+
+    /***
+     * Creates the state of one search with its own heuristics, weights and random generator,
+     * so that the threads of the parallel search share only read-only data
+     */
+    private SearchState createState(){
+        Domain domain = new Domain(this.csp);
+        Random random = configuration.getRandomSeed() == null ? null : new Random(configuration.getRandomSeed());
+        ConstraintWeights weights = new ConstraintWeights(this.csp.getConstraintCount());
+        ForwardChecking forwardChecking = new ForwardChecking(this.csp, this.binaryConstraintLookup,
+                this.binarySupports, weights);
+        ValueOrderHeuristic valueOrderHeuristic = new ValueOrderHeuristicFactory(this.csp, forwardChecking, random)
+                .create(configuration.getValueHeuristic());
+        VariableOrderHeuristic variableOrderHeuristic = new VariableOrderHeuristicFactory(this.csp, weights, random)
+                .create(configuration.getVariableHeuristic());
+        variableOrderHeuristic.prepare(domain);
+
+        List<Propagator> propagators = new ArrayList<>();
+        propagators.add(new AC3(this.csp, this.binaryConstraintLookup, this.binarySupports,
+                weights, configuration.getArcConsistency(), domain.getTrail()));
+        propagators.addAll(this.propagatorFactory.createAll(domain));
+        SearchState state = new SearchState(new StaticAssignment(this.csp.getVariableIndex()), domain,
+                propagators, new ConstraintEvaluator(this.constraintEvaluator), random, weights,
+                forwardChecking, variableOrderHeuristic, valueOrderHeuristic);
+        state.isConsistent = propagate(state);
+        return state;
+    }
+
+    /***
+     * Backtracking with an explicit stack of frames instead of recursion, so that the search can stop
+     * at a solution and continue from it. A frame holds the selected variable, its ordered values,
+     * the position of the next value and the trail mark taken before the first one.
+     * With restarts the search starts again from the root once the fail limit of the run is reached.
+     * The refuted decisions are kept as nogoods: for every value already tried at a depth, the decisions
+     * above it together with that value have no further solution. The solutions of the subtree
+     * the restart interrupted are found again, so the solutions returned so far are skipped.
+     * With backjumping every frame collects the decision levels that explain the failures of its values.
+     * Once all values failed, the search jumps back to the deepest of these levels instead of the previous one,
+     * the frames in between had no part in the failures. A solution makes every level part of the conflicts.
+     */
+    class SolutionIterator implements Iterator<Solution> {
+        private final SearchState state = createState();
+        private final RestartSchedule restarts = configuration.getRestarts();
+        private final NogoodStore nogoods = restarts == null ? null : new NogoodStore(variableCount, state.domains.getTrail());
+        private final Set<Solution> solutions = restarts == null ? null : new HashSet<>();
+        private final ConflictSets conflicts = configuration.isBackjumping() ? state.domains.trackConflicts() : null;
+        // Decision levels that explain the failed values of each frame
+        private final long[][] conflictLevels = conflicts == null ? null : new long[variableCount][conflicts.getWordCount()];
+        private int run;
+        private long failures;
+        private long decisions;
+        private final int[] variables = new int[variableCount];
+        private final int[][] values = new int[variableCount][];
+        private final PrunedDomains[][] prunedDomains = new PrunedDomains[variableCount][];
+        private final int[] positions = new int[variableCount];
+        private final int[] marks = new int[variableCount];
+        private final boolean[] isAssigned = new boolean[variableCount];
+        private int depth = -1;
+        private boolean isStarted;
+        private Solution next;
+
+        @Override
+        public boolean hasNext() {
+            if(next == null){
+                next = search();
+            }
+
+            return next != null;
+        }
+
+        @Override
+        public Solution next() {
+            if(!hasNext()){
+                throw new NoSuchElementException();
+            }
+
+            Solution solution = next;
+            next = null;
+            return solution;
+        }
+
+        NogoodStore getNogoods(){
+            return nogoods;
+        }
+
+        int getRun(){
+            return run;
+        }
+
+        long getDecisions(){
+            return decisions;
+        }
+
+        private Solution createSolution(){
+            return new Solution(csp.getVariableIndex(), state.assignment.toArray());
+        }
+
+        private void push(){
+            int var = state.variableOrderHeuristic.selectVariable(state.assignment, state.domains);
+            depth++;
+            variables[depth] = var;
+            prunedDomains[depth] = new PrunedDomains[state.domains.size(var)];
+            values[depth] = state.domains.size(var) > 0
+                    ? state.valueOrderHeuristic.orderValues(var, state.domains, state.assignment, prunedDomains[depth])
+                    : new int[0];
+            positions[depth] = 0;
+            marks[depth] = state.domains.mark();
+            if(conflicts != null){
+                // The values removed before the variable was selected failed because of their conflict set
+                Arrays.fill(conflictLevels[depth], 0L);
+                conflicts.addConflictSet(conflictLevels[depth], var);
+                if(values[depth].length < state.domains.size(var)){
+                    ConflictSets.addLevels(conflictLevels[depth], depth);
+                }
+            }
+        }
+
+        private void undo(int frame){
+            state.domains.restore(marks[frame]);
+            if(conflicts != null){
+                conflicts.retract(variables[frame]);
+            }
+            state.constraintEvaluator.unassign(variables[frame]);
+            state.assignment.reset(variables[frame]);
+            isAssigned[frame] = false;
+        }
+
+        /***
+         * Records the nogoods of the refuted values, unwinds the search to the root and starts the next run.
+         * The values of the deepest frame were all tried, above it the last tried value is the current decision.
+         */
+        private void restart(){
+            for(int d = 0; d <= depth; ++d){
+                int refuted = d == depth ? positions[d] : positions[d] - 1;
+                for(int i = 0; i < refuted; ++i){
+                    int[] vars = Arrays.copyOf(variables, d + 1);
+                    int[] vals = new int[d + 1];
+                    for(int j = 0; j < d; ++j){
+                        vals[j] = values[j][positions[j] - 1];
+                    }
+                    vals[d] = values[d][i];
+                    nogoods.add(vars, vals);
+                }
+            }
+
+            for(; depth >= 0; depth--){
+                if(isAssigned[depth]){
+                    undo(depth);
+                }
+            }
+
+            run++;
+            failures = 0;
+            if(propagate(state) && state.assignment.size() < variableCount){
+                push();
+            }
+        }
+
+        /***
+         * Unwinds the frames up to the deepest level in the conflicts of the exhausted frame
+         * and merges the conflicts into that level, the search ends when there is no such level
+         */
+        private void backjump(){
+            long[] conflict = conflictLevels[depth];
+            int target = depth - 1;
+            while(target >= 0 && (conflict[target >>> 6] & (1L << target)) == 0){
+                target--;
+            }
+
+            for(int d = depth - 1; d > target; --d){
+                undo(d);
+            }
+
+            if(target >= 0){
+                for(int i = 0; i < conflict.length; ++i){
+                    conflictLevels[target][i] |= conflict[i];
+                }
+            }
+
+            depth = target;
+        }
+
+        private Solution search(){
+            if(!isStarted){
+                isStarted = true;
+                if(nogoods != null){
+                    state.propagators.add(nogoods);
+                }
+                if(!state.isConsistent){
+                    return null;
+                } else if(state.assignment.size() == variableCount){
+                    return createSolution();
+                }
+
+                push();
+            }
+
+            while(depth >= 0 && !isCancelled){
+                if(isAssigned[depth]){
+                    undo(depth);
+                }
+
+                if(positions[depth] == values[depth].length){
+                    if(conflicts == null){
+                        depth--;
+                    } else {
+                        backjump();
+                    }
+                    continue;
+                }
+
+                PrunedDomains pruned = prunedDomains[depth][positions[depth]];
+                int value = values[depth][positions[depth]++];
+                isAssigned[depth] = true;
+                decisions++;
+                if(conflicts != null){
+                    conflicts.decide(variables[depth]);
+                }
+
+                if(!assign(state, variables[depth], value, pruned)){
+                    if(conflicts != null){
+                        conflicts.addFailure(conflictLevels[depth]);
+                    }
+
+                    if(restarts != null && ++failures >= restarts.getLimit(run)){
+                        restart();
+                    }
                     continue;
                 }
 
-                ac3.filterDomain(assignment, newDomains);
+                if(state.assignment.size() == variableCount){
+                    for(int d = 0; conflicts != null && d <= depth; ++d){
+                        ConflictSets.addLevels(conflictLevels[d], d);
+                    }
 
-                if(isEmptyDomain(newDomains, unassignedVariables)){
-                    assignment = assignment.reset(var);
+                    Solution solution = createSolution();
+                    if(solutions == null || solutions.add(solution)){
+                        return solution;
+                    }
                     continue;
                 }
 
-                if (constraintEvaluator.isSatisfied(assignment, var)) {
-                    recursiveBacktracking(solutions, assignment, newDomains);
+                push();
+            }
+
+            return null;
+        }
+    }
+
+    private List<Solution> parallelBacktracking(){
+        ThreadLocal<SearchState> states = ThreadLocal.withInitial(this::createState);
+        Queue<Solution> sharedSolutions = configuration.isDeterministic() ? null : new ConcurrentLinkedQueue<>();
+        ForkJoinPool pool = new ForkJoinPool(configuration.getParallelism());
+        try {
+            List<Solution> solutions = pool.invoke(new SearchTask(states, sharedSolutions, new int[0]));
+            return sharedSolutions == null ? solutions : new ArrayList<>(sharedSolutions);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /***
+     * Searches the subtree below the decisions in path (pairs of variable and value id).
+     * The task replays the decisions on the state of its thread and rewinds it to the root before
+     * it forks the subtrees, so a thread that runs other tasks while joining finds its state at the root.
+     * Down to the split depth the subtrees are forked, below it the search is sequential.
+     * The solutions are concatenated in the order of the values, unless sharedSolutions collects them.
+     * Each thread keeps the constraint weights it learnt in the tasks it ran before. With a random seed
+     * every task instead starts from fresh weights and reseeds the random generator of its thread from the seed
+     * and its path, so the result of a subtree does not depend on the thread that searched it.
+     */
+    private class SearchTask extends RecursiveTask<List<Solution>> {
+        private static final long serialVersionUID = 1L;
+
+        private final ThreadLocal<SearchState> states;
+        private final Queue<Solution> sharedSolutions;
+        private final int[] path;
+
+        SearchTask(ThreadLocal<SearchState> states, Queue<Solution> sharedSolutions, int[] path){
+            this.states = states;
+            this.sharedSolutions = sharedSolutions;
+            this.path = path;
+        }
+
+        @Override
+        protected List<Solution> compute() {
+            List<Solution> solutions = new ArrayList<>();
+            if(isCancelled){
+                return solutions;
+            }
+
+            SearchState state = states.get();
+            List<SearchTask> subtasks = new ArrayList<>();
+            Consumer<Solution> collector = sharedSolutions == null ? solutions::add : sharedSolutions::add;
+
+            if(state.random != null){
+                state.weights.reset();
+                state.random.setSeed(configuration.getRandomSeed() * 31 + Arrays.hashCode(path));
+            }
+
+            int mark = state.domains.mark();
+            int assigned = 0;
+            boolean isConsistent = state.isConsistent;
+            while(isConsistent && assigned < path.length){
+                isConsistent = assign(state, path[assigned], path[assigned + 1]);
+                assigned += 2;
+            }
+
+            if(isConsistent){
+                if(path.length / 2 >= configuration.getSplitDepth() || state.assignment.size() == variableCount){
+                    recursiveBacktracking(collector, state);
+                } else {
+                    int var = state.variableOrderHeuristic.selectVariable(state.assignment, state.domains);
+                    for(int value : state.valueOrderHeuristic.orderValues(var, state.domains, state.assignment)){
+                        int[] subpath = Arrays.copyOf(path, path.length + 2);
+                        subpath[path.length] = var;
+                        subpath[path.length + 1] = value;
+                        subtasks.add(new SearchTask(states, sharedSolutions, subpath));
+                    }
+                }
+            }
+
+            state.domains.restore(mark);
+            for(int i = assigned - 2; i >= 0; i -= 2){
+                state.constraintEvaluator.unassign(path[i]);
+                state.assignment.reset(path[i]);
+            }
+
+            invokeAll(subtasks);
+            for(SearchTask subtask : subtasks){
+                solutions.addAll(subtask.join());
+            }
+
+            return solutions;
+        }
+    }
+
+    /***
+     * Runs the propagators (AC3 first) until none of them removes a value.
+     * Returns false if a domain of a variable became empty.
+     */
+    private boolean propagate(SearchState state){
+        List<Propagator> propagators = state.propagators;
+        // Stop once every propagator ran without a change since the last removal
+        int unchanged = 0;
+        for(int i = 0; unchanged < propagators.size(); i = (i + 1) % propagators.size()){
+            Propagator propagator = propagators.get(i);
+            state.domains.explainBy(propagator.getScope());
+            int removed = propagator.propagate(state.assignment, state.domains);
+            if(removed < 0){
+                return false;
+            }
+
+            unchanged = removed > 0 ? 1 : unchanged + 1;
+        }
+
+        return true;
+    }
+
+    /***
+     * Assigns the value to the variable and propagates the change.
+     * Returns false if forward checking or propagation empties a domain or a constraint is violated.
+     * The caller undoes it by restoring the domains and unassigning the variable.
+     */
+    private boolean assign(SearchState state, int var, int value){
+        return assign(state, var, value, null);
+    }
+
+    /***
+     * Assigns the value like assign, pruned is the result of forward checking of the value
+     * recorded by the value heuristic on the same domains, null if it has to run
+     */
+    private boolean assign(SearchState state, int var, int value, PrunedDomains pruned){
+        state.assignment.set(var, csp.getValue(var, value));
+        state.constraintEvaluator.assign(var);
+        state.domains.assign(var, value);
+
+        int removed = pruned != null
+                ? pruned.apply(state.domains)
+                : state.forwardChecking.execute(state.assignment, var, value, state.domains);
+        if(removed < 0 || !propagate(state)){
+            return false;
+        } else if(!state.constraintEvaluator.isSatisfied(state.assignment, var)){
+            if(state.domains.getConflictSets() != null){
+                state.domains.getConflictSets().fail(csp.getScope(state.constraintEvaluator.getViolatedConstraint()));
+            }
+            return false;
+        }
+
+        return true;
+    }
+
+    private void recursiveBacktracking(Consumer<Solution> solutions, SearchState state)
+    {
+        Assignment assignment = state.assignment;
+        Domain domains = state.domains;
+        if(isCancelled){
+            return;
+        }
+
+        if(assignment.size() == variableCount){
+            solutions.accept(new Solution(csp.getVariableIndex(), state.assignment.toArray()));
+            return;
+        }
+
+        int var = state.variableOrderHeuristic.selectVariable(assignment, domains);
+
+        if(domains.size(var) > 0) {
+            PrunedDomains[] pruned = new PrunedDomains[domains.size(var)];
+            int[] domainOrdered = state.valueOrderHeuristic.orderValues(var, domains, assignment, pruned);
+
+            // Everything below is undone by rewinding the trail to this mark
+            int mark = domains.mark();
+            for (int i = 0; i < domainOrdered.length; ++i) {
+                if(assign(state, var, domainOrdered[i], pruned[i])) {
+                    recursiveBacktracking(solutions, state);
                 }
 
-                assignment = assignment.reset(var);
+                domains.restore(mark);
+                state.constraintEvaluator.unassign(var);
+                assignment.reset(var);
             }
         }
     }
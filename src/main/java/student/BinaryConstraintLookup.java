@@ -4,37 +4,135 @@ import student.constraints.Constraint;
 
 import java.util.*;
 
+/***
+ * Constraint graph of the binary constraints.
+ * Each pair of variables sharing a binary constraint is connected by two arcs, one in each direction.
+ * The arcs leaving x have the ids getArcOffset(x) .. getArcOffset(x + 1) - 1
+ * and lead to its neighbours in increasing order.
+ */
 public class BinaryConstraintLookup {
-    private final Map<String, List<Constraint>> constraintLookup;
+    private static final int[] NO_NEIGHBOURS = new int[0];
 
-    public BinaryConstraintLookup(Collection<Constraint> binaryConstraints){
-        this.constraintLookup = constructLookup(binaryConstraints);
-    }
+    // For each variable the sorted ids of the variables it shares a binary constraint with
+    private final int[][] neighbours;
+    private final int[] arcOffsets;
+    private final int[] arcSources;
+    private final int[] arcTargets;
+    private final int[] reverseArcs;
+    // The constraints between the source and the target of each arc
+    private final Constraint[][] arcConstraints;
+    private final int[][] arcConstraintIds;
+
+    public BinaryConstraintLookup(CompiledCSP csp, Collection<Integer> binaryConstraints){
+        int variableCount = csp.getVariableCount();
+        List<TreeMap<Integer, List<Integer>>> lookup = constructLookup(csp, binaryConstraints);
 
-    private static String getLookupKey(String var1, String var2){
-        if(var1.compareTo(var2) > 0){
-            String tmp = var1;
-            var1 = var2;
-            var2 = tmp;
+        this.neighbours = new int[variableCount][];
+        this.arcOffsets = new int[variableCount + 1];
+        for(int var = 0; var < variableCount; ++var){
+            TreeMap<Integer, List<Integer>> adjacent = lookup.get(var);
+            neighbours[var] = adjacent == null ? NO_NEIGHBOURS : new int[adjacent.size()];
+            arcOffsets[var + 1] = arcOffsets[var] + neighbours[var].length;
         }
 
-        return var1 + "~" + var2;
+        int arcCount = arcOffsets[variableCount];
+        this.arcSources = new int[arcCount];
+        this.arcTargets = new int[arcCount];
+        this.reverseArcs = new int[arcCount];
+        this.arcConstraints = new Constraint[arcCount][];
+        this.arcConstraintIds = new int[arcCount][];
+        for(int var = 0; var < variableCount; ++var){
+            TreeMap<Integer, List<Integer>> adjacent = lookup.get(var);
+            if(adjacent == null){
+                continue;
+            }
+
+            int arc = arcOffsets[var];
+            for(Map.Entry<Integer, List<Integer>> entry : adjacent.entrySet()){
+                neighbours[var][arc - arcOffsets[var]] = entry.getKey();
+                arcSources[arc] = var;
+                arcTargets[arc] = entry.getKey();
+                List<Integer> ids = entry.getValue();
+                arcConstraintIds[arc] = new int[ids.size()];
+                arcConstraints[arc] = new Constraint[ids.size()];
+                for(int i = 0; i < ids.size(); ++i){
+                    arcConstraintIds[arc][i] = ids.get(i);
+                    arcConstraints[arc][i] = csp.getConstraint(ids.get(i));
+                }
+                arc++;
+            }
+        }
+
+        for(int arc = 0; arc < arcCount; ++arc){
+            reverseArcs[arc] = getArc(arcTargets[arc], arcSources[arc]);
+        }
     }
 
-    private static Map<String,List<Constraint>> constructLookup(Collection<Constraint> binaryConstraints) {
-        Map<String, List<Constraint>> lookup = new HashMap<>(binaryConstraints.size());
-        for(Constraint constr : binaryConstraints){
-            String[] scope = new String[2];
-            constr.getScope().toArray(scope);
-            String key = getLookupKey(scope[0], scope[1]);
+    private static List<TreeMap<Integer, List<Integer>>> constructLookup(CompiledCSP csp, Collection<Integer> binaryConstraints) {
+        List<TreeMap<Integer, List<Integer>>> lookup = new ArrayList<>(csp.getVariableCount());
+        for(int i = 0; i < csp.getVariableCount(); ++i){
+            lookup.add(null);
+        }
+
+        for(int constr : binaryConstraints){
+            int[] scope = csp.getScope(constr);
+            for(int k = 0; k < 2; ++k){
+                int var1 = scope[k];
+                int var2 = scope[1 - k];
+                TreeMap<Integer, List<Integer>> adjacent = lookup.get(var1);
+                if(adjacent == null){
+                    lookup.set(var1, (adjacent = new TreeMap<>()));
+                }
 
-            List<Constraint> valueSet = lookup.computeIfAbsent(key, k -> new LinkedList<Constraint>());
-            valueSet.add(constr);
+                adjacent.computeIfAbsent(var2, x -> new ArrayList<>()).add(constr);
+            }
         }
+
         return lookup;
     }
 
-    public Collection<Constraint> getConstraints(String var1, String var2){
-        return constraintLookup.get(getLookupKey(var1, var2));
+    public int[] getNeighbours(int var){
+        return neighbours[var];
+    }
+
+    public int getArcCount(){
+        return arcSources.length;
+    }
+
+    public int getArcOffset(int var){
+        return arcOffsets[var];
+    }
+
+    public int getArcSource(int arc){
+        return arcSources[arc];
+    }
+
+    public int getArcTarget(int arc){
+        return arcTargets[arc];
+    }
+
+    public int getReverseArc(int arc){
+        return reverseArcs[arc];
+    }
+
+    public Constraint[] getArcConstraints(int arc){
+        return arcConstraints[arc];
+    }
+
+    public int[] getArcConstraintIds(int arc){
+        return arcConstraintIds[arc];
+    }
+
+    /***
+     * Returns the id of the arc from var1 to var2, -1 if there is no binary constraint between them
+     */
+    public int getArc(int var1, int var2){
+        int k = Arrays.binarySearch(neighbours[var1], var2);
+        return k < 0 ? -1 : arcOffsets[var1] + k;
+    }
+
+    public Constraint[] getConstraints(int var1, int var2){
+        int arc = getArc(var1, var2);
+        return arc < 0 ? null : arcConstraints[arc];
     }
 }
@@ -0,0 +1,82 @@
+package student;
+
+import student.constraints.Constraint;
+
+/***
+ * Support bitmaps of the binary constraints, computed once before the search.
+ * For a pair of variables (x, y) the matrix has one row per value of x, the row is a bitset
+ * over the values of y compatible with it. Only one orientation is stored, x is the variable
+ * with the smaller domain, so getMatrix returns null for the reverse arc.
+ * Pairs over the size budget are not compiled, their constraints are evaluated during the search.
+ */
+public class BinarySupports {
+    // Limits of the memory (in words) and of the constraint checks spent on the compilation
+    private static final long MAX_WORDS = 1L << 24;
+    private static final long MAX_CHECKS = 1L << 26;
+
+    private final long[][][] matrices;
+
+    public BinarySupports(CompiledCSP csp, BinaryConstraintLookup lookup){
+        this.matrices = new long[lookup.getArcCount()][][];
+
+        Assignment assignment = new StaticAssignment(csp.getVariableIndex());
+        long words = 0;
+        long checks = 0;
+        for(int arc = 0; arc < lookup.getArcCount(); ++arc){
+            int x = lookup.getArcSource(arc);
+            int y = lookup.getArcTarget(arc);
+            int xCount = csp.getValueCount(x);
+            int yCount = csp.getValueCount(y);
+            if(xCount > yCount || (xCount == yCount && x > y)){
+                continue;
+            }
+
+            long matrixWords = (long)xCount * ((yCount + 63) >>> 6);
+            long matrixChecks = (long)xCount * yCount;
+            if(words + matrixWords > MAX_WORDS || checks + matrixChecks > MAX_CHECKS){
+                continue;
+            }
+
+            words += matrixWords;
+            checks += matrixChecks;
+            matrices[arc] = createMatrix(csp, assignment, x, y, lookup.getArcConstraints(arc));
+        }
+    }
+
+    private static long[][] createMatrix(CompiledCSP csp, Assignment assignment, int x, int y, Constraint[] constraints){
+        int yCount = csp.getValueCount(y);
+        long[][] matrix = new long[csp.getValueCount(x)][];
+        for(int a = 0; a < matrix.length; ++a){
+            long[] row = new long[(yCount + 63) >>> 6];
+            assignment.set(x, csp.getValue(x, a));
+            for(int b = 0; b < yCount; ++b){
+                assignment.set(y, csp.getValue(y, b));
+                boolean isValid = true;
+                for(Constraint constraint : constraints){
+                    if(!constraint.evaluate(assignment)){
+                        isValid = false;
+                        break;
+                    }
+                }
+
+                if(isValid){
+                    row[b >>> 6] |= 1L << b;
+                }
+                assignment.reset(y);
+            }
+
+            assignment.reset(x);
+            matrix[a] = row;
+        }
+
+        return matrix;
+    }
+
+    /***
+     * Returns the matrix of the arc, row a is the bitset of the values of the target compatible
+     * with the value a of the source. Null if the arc is not compiled in this orientation.
+     */
+    public long[][] getMatrix(int arc){
+        return matrices[arc];
+    }
+}
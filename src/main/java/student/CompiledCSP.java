@@ -0,0 +1,198 @@
+package student;
+
+import student.constraints.Constraint;
+import student.constraints.ConstraintBase;
+
+import java.util.*;
+
+/***
+ * The CSP compiled for the solver.
+ * Every variable is mapped once to a dense integer id, every constraint gets
+ * an id and its scope is stored as an array of variable ids.
+ * The values of each variable are numbered as well (sorted when they are comparable),
+ * so that domains can be stored as bitsets over value ids.
+ * An IntegerRange domain stays implicit, the id of a value is its position in the range.
+ * Constraints built with the c expressions are simplified and compiled to evaluators over int codes when possible.
+ */
+public class CompiledCSP {
+    private final VariableIndex variables;
+    private final Object[][] values;
+    // The implicit domains, the values of such a variable are null
+    private final IntegerRange[] ranges;
+    private final Class<?>[] valueTypes;
+    private final List<Map<Object, Integer>> valueIds;
+    private final Constraint[] constraints;
+    private final int[][] scopes;
+    // For each variable the ids of the constraints with the variable in their scope
+    private final int[][] variableConstraints;
+
+    public CompiledCSP(CSP csp){
+        this.variables = new VariableIndex(csp.getVariables());
+        this.ranges = new IntegerRange[this.variables.size()];
+        this.values = createValues(this.variables, csp.getDomains(), this.ranges);
+        this.valueIds = new ArrayList<>(Collections.nCopies(this.values.length, null));
+        this.valueTypes = new Class<?>[this.values.length];
+        for(int i = 0; i < this.values.length; ++i){
+            this.valueTypes[i] = ranges[i] != null ? Integer.class : getCommonType(this.values[i]);
+        }
+
+        Collection<Constraint> constraints = csp.getConstraints();
+        this.constraints = constraints.toArray(new Constraint[constraints.size()]);
+        this.scopes = new int[this.constraints.length][];
+        for(int i = 0; i < this.constraints.length; ++i){
+            if(this.constraints[i] instanceof ConstraintBase){
+                this.constraints[i] = compile((ConstraintBase)this.constraints[i]);
+            }
+            this.scopes[i] = createScope(this.variables, this.constraints[i]);
+        }
+
+        this.variableConstraints = createVariableConstraints(this.variables.size(), this.scopes);
+    }
+
+    private static int[][] createVariableConstraints(int variableCount, int[][] scopes) {
+        int[] counts = new int[variableCount];
+        for(int[] scope : scopes) {
+            for (int var : scope) {
+                counts[var]++;
+            }
+        }
+
+        int[][] lookup = new int[variableCount][];
+        for(int var = 0; var < variableCount; ++var){
+            lookup[var] = new int[counts[var]];
+            counts[var] = 0;
+        }
+
+        for(int constr = 0; constr < scopes.length; ++constr) {
+            for (int var : scopes[constr]) {
+                lookup[var][counts[var]++] = constr;
+            }
+        }
+
+        return lookup;
+    }
+
+    private Constraint compile(ConstraintBase constraint){
+        // Keep the original when the simplification drops a variable, the constraint would not be checked
+        ConstraintBase simplified = constraint.simplify();
+        if(!simplified.getScope().equals(constraint.getScope())){
+            simplified = constraint;
+        }
+
+        return simplified.compile(this);
+    }
+
+    private static Object[][] createValues(VariableIndex variables, Map<String, Set<Object>> domains,
+                                           IntegerRange[] ranges){
+        Object[][] result = new Object[variables.size()][];
+        for(int i = 0; i < result.length; ++i){
+            Set<Object> domain = domains.get(variables.getName(i));
+            if(domain instanceof IntegerRange){
+                ranges[i] = (IntegerRange)domain;
+                continue;
+            }
+
+            Object[] values = domain.toArray();
+            if(isSortable(values)){
+                Arrays.sort(values);
+            }
+
+            result[i] = values;
+        }
+
+        return result;
+    }
+
+    private static boolean isSortable(Object[] values){
+        return values.length > 0 && values[0] instanceof Comparable && getCommonType(values) != null;
+    }
+
+    private static Class<?> getCommonType(Object[] values){
+        if(values.length == 0 || values[0] == null){
+            return null;
+        }
+
+        Class<?> type = values[0].getClass();
+        for(Object value : values){
+            if(value == null || value.getClass() != type){
+                return null;
+            }
+        }
+
+        return type;
+    }
+
+    private static int[] createScope(VariableIndex variables, Constraint constraint){
+        Set<String> scope = constraint.getScope();
+        int[] result = new int[scope.size()];
+        int i = 0;
+        for(String var : scope){
+            result[i++] = variables.getId(var);
+        }
+
+        return result;
+    }
+
+    public VariableIndex getVariableIndex(){
+        return variables;
+    }
+
+    public int getVariableCount(){
+        return variables.size();
+    }
+
+    public int getValueCount(int variable){
+        return ranges[variable] != null ? ranges[variable].size() : values[variable].length;
+    }
+
+    /***
+     * Returns the class shared by all values of the variable, null if they differ
+     */
+    public Class<?> getValueType(int variable){
+        return valueTypes[variable];
+    }
+
+    public Object getValue(int variable, int value){
+        return ranges[variable] != null ? ranges[variable].get(value) : values[variable][value];
+    }
+
+    /***
+     * Returns the id of the value in the domain of the variable, -1 if the value is not in the domain
+     */
+    public synchronized int getValueId(int variable, Object value){
+        if(ranges[variable] != null){
+            return ranges[variable].indexOf(value);
+        }
+
+        Map<Object, Integer> ids = valueIds.get(variable);
+        if(ids == null){
+            ids = new HashMap<>(values[variable].length * 2);
+            for(int i = 0; i < values[variable].length; ++i){
+                ids.put(values[variable][i], i);
+            }
+            valueIds.set(variable, ids);
+        }
+
+        Integer id = ids.get(value);
+        return id == null ? -1 : id;
+    }
+
+    public int getConstraintCount(){
+        return constraints.length;
+    }
+
+    public Constraint getConstraint(int constraint){
+        return constraints[constraint];
+    }
+
+    public int[] getScope(int constraint){
+        return scopes[constraint];
+    }
+
+    /***
+     * Returns the ids of the constraints with the variable in their scope
+     */
+    public int[] getVariableConstraints(int variable){
+        return variableConstraints[variable];
+    }
+}
@@ -0,0 +1,175 @@
+package student;
+
+import java.util.Arrays;
+
+/***
+ * Conflict sets of the variables for conflict-directed backjumping.
+ * The conflict set of a variable is a bitset of the decision levels that explain the values removed
+ * from its domain, it is trailed together with the domains. A removal is explained by the level of the assigned
+ * variables responsible for it and by the conflict sets of the unassigned ones. When the responsible variables
+ * are not known, all current levels explain it.
+ * The search calls decide and retract in the order of a stack, the propagators call explainBy before they remove values.
+ */
+public final class ConflictSets {
+    private final int wordCount;
+    private final long[] sets;
+    // Decision level of each variable, -1 if the search did not decide it
+    private final int[] levels;
+    private final Trail trail;
+    private int depth;
+    private int[] reasonScope;
+    private int reasonVariable = -1;
+    private boolean isDeciding;
+    private int failedVariable = -1;
+    private int[] failedScope;
+
+    public ConflictSets(int variableCount, Trail trail){
+        this.wordCount = Math.max((variableCount + 63) >>> 6, 1);
+        this.sets = new long[variableCount * wordCount];
+        this.levels = new int[variableCount];
+        Arrays.fill(this.levels, -1);
+        this.trail = trail;
+    }
+
+    public int getWordCount(){
+        return wordCount;
+    }
+
+    public int getDepth(){
+        return depth;
+    }
+
+    /***
+     * Makes the variable the decision of the next level, the removals until the next explainBy are the decision itself
+     */
+    public void decide(int variable){
+        levels[variable] = depth++;
+        isDeciding = true;
+        failedVariable = -1;
+        failedScope = null;
+    }
+
+    public void retract(int variable){
+        levels[variable] = -1;
+        depth--;
+    }
+
+    /***
+     * The following removals are explained by the domain of the variable
+     */
+    public void explainBy(int variable){
+        isDeciding = false;
+        reasonScope = null;
+        reasonVariable = variable;
+    }
+
+    /***
+     * The following removals are explained by the domains of the variables, null if they are not known
+     */
+    public void explainBy(int[] scope){
+        isDeciding = false;
+        reasonScope = scope;
+        reasonVariable = -1;
+    }
+
+    /***
+     * Called by the domains after values of the variable were removed
+     */
+    void removed(int variable, boolean isEmpty){
+        if(isDeciding){
+            return;
+        }
+
+        int offset = variable * wordCount;
+        if(reasonVariable >= 0){
+            explain(offset, reasonVariable, variable);
+        } else if(reasonScope != null){
+            for(int var : reasonScope){
+                explain(offset, var, variable);
+            }
+        } else {
+            for(int level = 0; level < depth; ++level){
+                set(offset, level);
+            }
+        }
+
+        if(isEmpty){
+            failedVariable = variable;
+        }
+    }
+
+    private void explain(int offset, int reason, int variable){
+        if(reason == variable){
+            return;
+        } else if(levels[reason] >= 0){
+            set(offset, levels[reason]);
+            return;
+        }
+
+        int reasonOffset = reason * wordCount;
+        for(int i = 0; i < wordCount; ++i){
+            long word = sets[offset + i] | sets[reasonOffset + i];
+            if(word != sets[offset + i]){
+                trail.save(sets, offset + i);
+                sets[offset + i] = word;
+            }
+        }
+    }
+
+    private void set(int offset, int level){
+        int index = offset + (level >>> 6);
+        long word = sets[index] | (1L << level);
+        if(word != sets[index]){
+            trail.save(sets, index);
+            sets[index] = word;
+        }
+    }
+
+    /***
+     * Records a constraint violated by the assigned variables of the scope
+     */
+    public void fail(int[] scope){
+        failedScope = scope;
+    }
+
+    /***
+     * Adds the levels that explain the conflict set of the variable to target
+     */
+    public void addConflictSet(long[] target, int variable){
+        int offset = variable * wordCount;
+        for(int i = 0; i < wordCount; ++i){
+            target[i] |= sets[offset + i];
+        }
+    }
+
+    /***
+     * Adds the levels that explain the last failure to target, all levels when the failure is not explained
+     */
+    public void addFailure(long[] target){
+        if(failedVariable >= 0){
+            addConflictSet(target, failedVariable);
+            if(levels[failedVariable] >= 0){
+                target[levels[failedVariable] >>> 6] |= 1L << levels[failedVariable];
+            }
+        } else if(failedScope != null){
+            for(int var : failedScope){
+                if(levels[var] >= 0){
+                    target[levels[var] >>> 6] |= 1L << levels[var];
+                } else {
+                    addConflictSet(target, var);
+                }
+            }
+        } else {
+            addLevels(target, depth);
+        }
+    }
+
+    /***
+     * Adds the levels below the level to target
+     */
+    public static void addLevels(long[] target, int level){
+        for(int i = 0; i < level; ++i){
+            target[i >>> 6] |= 1L << i;
+        }
+    }
+}
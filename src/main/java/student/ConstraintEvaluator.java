@@ -4,50 +4,111 @@ import student.constraints.Constraint;
 
 import java.util.*;
 
+/***
+ * Checks the constraints whose scope became fully assigned.
+ * Every constraint keeps the number of its unassigned variables, the search calls assign and unassign
+ * in the order of a stack so the counters are restored on backtrack.
+ */
 public class ConstraintEvaluator {
-    private Map<String, List<Constraint>> constraintLookup;
-    public ConstraintEvaluator(Collection<Constraint> constraints){
-        this.constraintLookup = constructLookup(constraints);
+    private final CompiledCSP csp;
+    private final int[] unassignedCounts;
+    // Number of constraints with at least two unassigned variables
+    private int sharedCount;
+    // The constraint that failed the last isSatisfied, -1 if it succeeded
+    private int violatedConstraint = -1;
+
+    public ConstraintEvaluator(CompiledCSP csp){
+        this.csp = csp;
+        this.unassignedCounts = new int[csp.getConstraintCount()];
+        for(int constraint = 0; constraint < unassignedCounts.length; ++constraint){
+            unassignedCounts[constraint] = csp.getScope(constraint).length;
+            sharedCount += unassignedCounts[constraint] > 1 ? 1 : 0;
+        }
     }
 
-    private static Map<String,List<Constraint>> constructLookup(Collection<Constraint> constraints) {
-        Map<String, List<Constraint>> lookup = new HashMap<>(constraints.size());
-        for(Constraint constr : constraints) {
-            for (String var : constr.getScope()) {
-                List<Constraint> valueSet = lookup.computeIfAbsent(var, k -> new LinkedList<>());
-                valueSet.add(constr);
+    /***
+     * Creates an evaluator of the same CSP with fresh counters, used by another search
+     */
+    public ConstraintEvaluator(ConstraintEvaluator evaluator){
+        this(evaluator.csp);
+    }
+
+    public void assign(int variable){
+        for(int constraint: csp.getVariableConstraints(variable)){
+            if(--unassignedCounts[constraint] == 1){
+                sharedCount--;
             }
         }
+    }
 
-        return lookup;
+    public void unassign(int variable){
+        for(int constraint: csp.getVariableConstraints(variable)){
+            if(++unassignedCounts[constraint] == 2){
+                sharedCount++;
+            }
+        }
     }
 
-    private boolean isValidForScope(Constraint constraint, String defaultVarName, Set<String> assignedVariables) {
-        for(String dependency: constraint.getScope()){
-            if(!dependency.equals(defaultVarName) && !assignedVariables.contains(dependency)){
-                return false;
+    /***
+     * Returns true if the unassigned variables are independent: no constraint has two of them in its scope
+     * and every value left in their domains satisfies the constraints of the variable.
+     * Any combination of the remaining values is then a solution.
+     */
+    public boolean isIndependent(Assignment assignment, Domain domains){
+        if(sharedCount > 0){
+            return false;
+        }
+
+        // Setting and resetting the values reorders the unassigned variables
+        int[] unassigned = new int[assignment.getUnassignedCount()];
+        for(int i = 0; i < unassigned.length; ++i){
+            unassigned[i] = assignment.getUnassignedVariable(i);
+        }
+
+        for(int var : unassigned){
+            for(int constraint : csp.getVariableConstraints(var)){
+                if(!isSatisfiedByAll(assignment, domains, var, constraint)){
+                    return false;
+                }
             }
         }
 
         return true;
     }
 
-    public boolean isSatisfied(Assignment assignment, String lastVariable){
-        Set<String> assignedVariables = assignment.getAssignedVariables();
-        List<Constraint> constraints = constraintLookup.get(lastVariable);
-
-        if(constraints == null){
+    private boolean isSatisfiedByAll(Assignment assignment, Domain domains, int variable, int constraint){
+        if(domains.size(variable) == 0){
             return true;
         }
 
-        for(Constraint constraint: constraints){
-            if(isValidForScope(constraint, lastVariable, assignedVariables)){
-                if(!constraint.evaluate(assignment)){
+        boolean result = true;
+        for(int value = domains.first(variable); value >= 0 && result; value = domains.next(variable, value + 1)){
+            assignment.set(variable, csp.getValue(variable, value));
+            result = csp.getConstraint(constraint).evaluate(assignment);
+        }
+
+        assignment.reset(variable);
+        return result;
+    }
+
+    /***
+     * Evaluates the constraints of the last assigned variable that have their whole scope assigned
+     */
+    public boolean isSatisfied(Assignment assignment, int lastVariable){
+        for(int constraint: csp.getVariableConstraints(lastVariable)){
+            if(unassignedCounts[constraint] == 0){
+                if(!csp.getConstraint(constraint).evaluate(assignment)){
+                    violatedConstraint = constraint;
                     return false;
                 }
             }
         }
 
+        violatedConstraint = -1;
         return true;
     }
+
+    public int getViolatedConstraint(){
+        return violatedConstraint;
+    }
 }
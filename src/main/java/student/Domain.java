@@ -1,33 +1,310 @@
 package student;
 
-import java.util.*;
+import java.util.Arrays;
 
+/***
+ * Domains of all variables of a compiled CSP.
+ * The domain of each variable is a bitset over its value ids (see CompiledCSP.getValue),
+ * all bitsets are stored in one array. Changes are recorded on a trail,
+ * the search calls mark() before it changes the domains and restore(mark) on backtrack.
+ */
 public class Domain{
-    private Map<String, Set<Object>> domainRepresentation;
-    private Map<String, Set<Object>> originalDomain;
+    private final long[] words;
+    private final int[] offsets;
+    private final int[] sizes;
+    private final Trail trail;
+    private ConflictSets conflictSets;
+    private SizeHeap sizeHeap;
 
-    public Domain(Map<String, Set<Object>> values){
-        domainRepresentation = new HashMap<>(values);
-        originalDomain = values;
+    public Domain(CompiledCSP csp){
+        int variableCount = csp.getVariableCount();
+        this.offsets = new int[variableCount + 1];
+        this.sizes = new int[variableCount];
+        for(int var = 0; var < variableCount; ++var){
+            sizes[var] = csp.getValueCount(var);
+            offsets[var + 1] = offsets[var] + ((sizes[var] + 63) >>> 6);
+        }
+
+        this.words = new long[offsets[variableCount]];
+        for(int var = 0; var < variableCount; ++var){
+            int offset = offsets[var];
+            int full = sizes[var] >>> 6;
+            for(int i = 0; i < full; ++i){
+                words[offset + i] = -1L;
+            }
+
+            if((sizes[var] & 63) != 0){
+                words[offset + full] = (1L << (sizes[var] & 63)) - 1;
+            }
+        }
+
+        this.trail = new Trail();
+    }
+
+    public int size(int variable){
+        return sizes[variable];
+    }
+
+    public boolean contains(int variable, int value){
+        return (words[offsets[variable] + (value >>> 6)] & (1L << value)) != 0;
+    }
+
+    public boolean remove(int variable, int value){
+        int index = offsets[variable] + (value >>> 6);
+        long word = words[index];
+        long bit = 1L << value;
+        if((word & bit) == 0){
+            return false;
+        }
+
+        trail.save(words, index);
+        trail.save(sizes, variable);
+        words[index] = word & ~bit;
+        sizes[variable]--;
+        changed(variable);
+        return true;
+    }
+
+    public int getWordCount(int variable){
+        return offsets[variable + 1] - offsets[variable];
+    }
+
+    /***
+     * Removes the values that are not in the bitset, returns the number of removed values
+     */
+    public int retain(int variable, long[] values){
+        int removed = 0;
+        int offset = offsets[variable];
+        int wordCount = offsets[variable + 1] - offset;
+        for(int i = 0; i < wordCount; ++i){
+            long word = words[offset + i];
+            long newWord = word & values[i];
+            if(newWord != word){
+                trail.save(words, offset + i);
+                words[offset + i] = newWord;
+                removed += Long.bitCount(word) - Long.bitCount(newWord);
+            }
+        }
+
+        return updateSize(variable, removed);
+    }
+
+    /***
+     * Returns true if any of the values in the bitset is in the domain
+     */
+    public boolean intersects(int variable, long[] values){
+        int offset = offsets[variable];
+        int wordCount = offsets[variable + 1] - offset;
+        for(int i = 0; i < wordCount; ++i){
+            if((words[offset + i] & values[i]) != 0){
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /***
+     * Reduces the domain of the variable to the single value
+     */
+    public void assign(int variable, int value){
+        if(sizeHeap != null){
+            sizeHeap.remove(variable);
+        }
+
+        for(int index = offsets[variable]; index < offsets[variable + 1]; ++index){
+            long word = (index == offsets[variable] + (value >>> 6)) ? words[index] & (1L << value) : 0;
+            if(word != words[index]){
+                trail.save(words, index);
+                words[index] = word;
+            }
+        }
+
+        int size = contains(variable, value) ? 1 : 0;
+        if(sizes[variable] != size){
+            trail.save(sizes, variable);
+            sizes[variable] = size;
+            changed(variable);
+        }
+    }
+
+    /***
+     * Returns the smallest value id in the domain of the variable that is greater or equal to value,
+     * -1 if there is none
+     */
+    public int next(int variable, int value){
+        int end = offsets[variable + 1];
+        int index = offsets[variable] + (value >>> 6);
+        if(index >= end){
+            return -1;
+        }
+
+        long word = words[index] & (-1L << value);
+        while(word == 0){
+            if(++index == end){
+                return -1;
+            }
+            word = words[index];
+        }
+
+        return ((index - offsets[variable]) << 6) + Long.numberOfTrailingZeros(word);
+    }
+
+    public int first(int variable){
+        return next(variable, 0);
+    }
+
+    /***
+     * Returns the largest value id in the domain of the variable, -1 if the domain is empty
+     */
+    public int last(int variable){
+        for(int index = offsets[variable + 1] - 1; index >= offsets[variable]; --index){
+            if(words[index] != 0){
+                return ((index - offsets[variable]) << 6) + 63 - Long.numberOfLeadingZeros(words[index]);
+            }
+        }
+
+        return -1;
     }
 
-    public void restrict(String variable, Collection<Object> values){
-        if(values.size() == 0)
-            return;
+    /***
+     * Removes the value ids smaller than value, returns the number of removed values
+     */
+    public int removeBelow(int variable, int value){
+        int removed = 0;
+        int offset = offsets[variable];
+        int end = Math.min(offsets[variable + 1], offset + (Math.max(value, 0) >>> 6) + 1);
+        for(int index = offset; index < end; ++index){
+            int bit = ((index - offset) << 6);
+            long mask = value >= bit + 64 ? 0 : (value <= bit ? -1L : -1L << (value - bit));
+            removed += update(index, words[index] & mask);
+        }
+
+        return updateSize(variable, removed);
+    }
+
+    /***
+     * Removes the value ids greater than value, returns the number of removed values
+     */
+    public int removeAbove(int variable, int value){
+        int removed = 0;
+        int offset = offsets[variable];
+        int start = offset + (Math.max(value, 0) >>> 6);
+        for(int index = Math.max(start, offset); index < offsets[variable + 1]; ++index){
+            int bit = ((index - offset) << 6);
+            long mask = value < bit ? 0 : (value >= bit + 63 ? -1L : -1L >>> (63 - (value - bit)));
+            removed += update(index, words[index] & mask);
+        }
+
+        return updateSize(variable, removed);
+    }
+
+    private int update(int index, long word){
+        if(word == words[index]){
+            return 0;
+        }
+
+        trail.save(words, index);
+        int removed = Long.bitCount(words[index]) - Long.bitCount(word);
+        words[index] = word;
+        return removed;
+    }
+
+    private int updateSize(int variable, int removed){
+        if(removed > 0){
+            trail.save(sizes, variable);
+            sizes[variable] -= removed;
+            changed(variable);
+        }
+
+        return removed;
+    }
+
+    private void changed(int variable){
+        if(sizeHeap != null){
+            sizeHeap.update(variable);
+        }
+
+        if(conflictSets != null){
+            conflictSets.removed(variable, sizes[variable] == 0);
+        }
+    }
+
+    /***
+     * Returns a copy of the bitset of the domain of the variable, see retain
+     */
+    public long[] copyValues(int variable){
+        return Arrays.copyOfRange(words, offsets[variable], offsets[variable + 1]);
+    }
+
+    public int[] values(int variable){
+        int[] values = new int[sizes[variable]];
+        int i = 0;
+        for(int value = first(variable); value >= 0; value = next(variable, value + 1)){
+            values[i++] = value;
+        }
+
+        return values;
+    }
+
+    public int mark(){
+        return trail.mark();
+    }
+
+    public void restore(int mark){
+        trail.restore(mark);
+    }
+
+    public Trail getTrail(){
+        return trail;
+    }
 
-        Set<Object> valueSet;
-        if(originalDomain.get(variable) == (valueSet = domainRepresentation.get(variable))){
-            domainRepresentation.put(variable, (valueSet = new HashSet<Object>(valueSet)));
+    /***
+     * Starts tracking the conflict sets of the removals, see ConflictSets
+     */
+    public ConflictSets trackConflicts(){
+        if(conflictSets == null){
+            conflictSets = new ConflictSets(sizes.length, trail);
         }
 
-        valueSet.removeAll(values);
+        return conflictSets;
     }
 
-    public Set<Object> get(String variable){
-        return domainRepresentation.get(variable);
+    public ConflictSets getConflictSets(){
+        return conflictSets;
     }
 
-    public Domain inherit(){
-        return new Domain(this.domainRepresentation);
+    /***
+     * Starts keeping the variables ordered by their domain sizes, see SizeHeap.
+     * Called before the first assignment, assign removes the assigned variables from the heap.
+     */
+    public SizeHeap trackSizes(){
+        if(sizeHeap == null){
+            sizeHeap = new SizeHeap(sizes, trail);
+        }
+
+        return sizeHeap;
+    }
+
+    public SizeHeap getSizeHeap(){
+        return sizeHeap;
+    }
+
+    /***
+     * The following removals are explained by the domain of the variable
+     */
+    public void explainBy(int variable){
+        if(conflictSets != null){
+            conflictSets.explainBy(variable);
+        }
+    }
+
+    /***
+     * The following removals are explained by the domains of the variables, null if they are not known
+     */
+    public void explainBy(int[] variables){
+        if(conflictSets != null){
+            conflictSets.explainBy(variables);
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,80 @@
+package student;
+
+import java.security.InvalidParameterException;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/***
+ * Immutable domain of the integers start..end - 1 that does not store its values.
+ * CompiledCSP keeps such a domain implicit instead of creating an array of its values.
+ */
+public final class IntegerRange extends AbstractSet<Object> {
+    // Boxed small values shared by all ranges, the search reads the same values over and over
+    private static final Integer[] BOXED = new Integer[1 << 16];
+
+    static {
+        for(int i = 0; i < BOXED.length; ++i){
+            BOXED[i] = i;
+        }
+    }
+
+    private final int start;
+    private final int end;
+
+    public IntegerRange(int start, int end){
+        if(end < start){
+            throw new InvalidParameterException("end");
+        }
+
+        this.start = start;
+        this.end = end;
+    }
+
+    public int getStart(){
+        return start;
+    }
+
+    public Integer get(int index){
+        int value = start + index;
+        return value >= 0 && value < BOXED.length ? BOXED[value] : Integer.valueOf(value);
+    }
+
+    /***
+     * Returns the position of the value in the range, -1 if it is not there
+     */
+    public int indexOf(Object value){
+        return contains(value) ? (Integer)value - start : -1;
+    }
+
+    @Override
+    public boolean contains(Object value) {
+        return value instanceof Integer && (Integer)value >= start && (Integer)value < end;
+    }
+
+    @Override
+    public int size() {
+        return end - start;
+    }
+
+    @Override
+    public Iterator<Object> iterator() {
+        return new Iterator<Object>() {
+            private int next = start;
+
+            @Override
+            public boolean hasNext() {
+                return next < end;
+            }
+
+            @Override
+            public Object next() {
+                if(next >= end){
+                    throw new NoSuchElementException();
+                }
+
+                return next++;
+            }
+        };
+    }
+}
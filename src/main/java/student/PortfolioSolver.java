@@ -0,0 +1,112 @@
+package student;
+
+import student.algorithm.AC3;
+
+import java.security.InvalidParameterException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/***
+ * Races BacktrackingSolvers with different configurations, each on its own thread.
+ * The solutions of the first solver that finishes are returned and the other solvers are cancelled.
+ * All solvers share one compiled CSP and the tables of its binary constraints, which are built once.
+ */
+public class PortfolioSolver implements Solver {
+    private final CSP csp;
+    private final List<SolverConfiguration> configurations;
+
+    public PortfolioSolver(CSP csp){
+        this(csp, defaultConfigurations());
+    }
+
+    public PortfolioSolver(CSP csp, List<SolverConfiguration> configurations){
+        if(configurations.isEmpty()){
+            throw new InvalidParameterException("No configuration");
+        }
+
+        this.csp = csp;
+        this.configurations = configurations;
+    }
+
+    /***
+     * Both variable heuristics with and without the value heuristic and the default arc consistency,
+     * the most constrained variable with AC2001 and dom/wdeg
+     */
+    public static List<SolverConfiguration> defaultConfigurations(){
+        List<SolverConfiguration> configurations = new ArrayList<>();
+        for(String variableHeuristic : new String[]{"MostConstrainedVariable", "MostConstrainingVariable"}){
+            configurations.add(new SolverConfiguration("LeastConstrainingValue", variableHeuristic));
+            configurations.add(new SolverConfiguration(null, variableHeuristic));
+        }
+
+        configurations.add(new SolverConfiguration("LeastConstrainingValue", "MostConstrainedVariable")
+                .setArcConsistency(AC3.Mode.AC2001));
+        configurations.add(new SolverConfiguration(null, "DomWdeg"));
+        return configurations;
+    }
+
+    /***
+     * Creates the solver of one configuration
+     */
+    BacktrackingSolver createSolver(CompiledCSP csp, BinaryConstraintLookup binaryConstraintLookup,
+                                    BinarySupports binarySupports, SolverConfiguration configuration){
+        return new BacktrackingSolver(csp, binaryConstraintLookup, binarySupports, configuration);
+    }
+
+    @Override
+    public List<Solution> solve() {
+        CompiledCSP compiled = new CompiledCSP(csp);
+        BinaryConstraintLookup binaryConstraintLookup = BacktrackingSolver.createBinaryConstraintLookup(compiled);
+        BinarySupports binarySupports = new BinarySupports(compiled, binaryConstraintLookup);
+        int count = configurations.size();
+        AtomicReferenceArray<BacktrackingSolver> solvers = new AtomicReferenceArray<>(count);
+        // Set once a solver finished, the solvers created later cancel themselves
+        AtomicBoolean isFinished = new AtomicBoolean();
+
+        ExecutorService executor = Executors.newFixedThreadPool(count);
+        CompletionService<List<Solution>> completion = new ExecutorCompletionService<>(executor);
+        for(int i = 0; i < count; ++i){
+            int index = i;
+            completion.submit(() -> {
+                BacktrackingSolver solver = createSolver(compiled, binaryConstraintLookup, binarySupports,
+                        configurations.get(index));
+                solvers.set(index, solver);
+                if(isFinished.get()){
+                    solver.cancel();
+                }
+                return solver.solve();
+            });
+        }
+
+        try {
+            ExecutionException failure = null;
+            for(int i = 0; i < count; ++i){
+                try {
+                    return completion.take().get();
+                } catch (ExecutionException e) {
+                    failure = e;
+                }
+            }
+
+            if(failure.getCause() instanceof RuntimeException){
+                throw (RuntimeException)failure.getCause();
+            }
+            throw new RuntimeException(failure.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } finally {
+            isFinished.set(true);
+            for(int i = 0; i < count; ++i){
+                BacktrackingSolver solver = solvers.get(i);
+                if(solver != null){
+                    solver.cancel();
+                }
+            }
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package student;
+
+import java.security.InvalidParameterException;
+
+/***
+ * Fail limits of the restarts of the search, run i (from 0) ends after getLimit(i) failed assignments.
+ * The Luby schedule multiplies the Luby sequence 1, 1, 2, 1, 1, 2, 4, ... by the scale,
+ * the geometric schedule multiplies the base by the factor after each run.
+ */
+public class RestartSchedule {
+    private final boolean isLuby;
+    private final long scale;
+    private final double factor;
+
+    private RestartSchedule(boolean isLuby, long scale, double factor){
+        if(scale <= 0 || factor < 1){
+            throw new InvalidParameterException("Invalid restart schedule");
+        }
+
+        this.isLuby = isLuby;
+        this.scale = scale;
+        this.factor = factor;
+    }
+
+    public static RestartSchedule luby(long scale){
+        return new RestartSchedule(true, scale, 1);
+    }
+
+    public static RestartSchedule geometric(long base, double factor){
+        return new RestartSchedule(false, base, factor);
+    }
+
+    public long getLimit(int run){
+        if(isLuby){
+            return scale * lubyTerm(run + 1);
+        }
+
+        return (long)Math.min(scale * Math.pow(factor, run), Long.MAX_VALUE);
+    }
+
+    /***
+     * The i-th element of the Luby sequence, i from 1
+     */
+    static long lubyTerm(long i){
+        int k = 1;
+        while((1L << k) - 1 < i){
+            k++;
+        }
+
+        if(i == (1L << k) - 1){
+            return 1L << (k - 1);
+        }
+
+        return lubyTerm(i - (1L << (k - 1)) + 1);
+    }
+}
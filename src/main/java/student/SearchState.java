@@ -0,0 +1,45 @@
+package student;
+
+import student.algorithm.ConstraintWeights;
+import student.algorithm.ForwardChecking;
+import student.algorithm.Propagator;
+import student.algorithm.ValueOrderHeuristic;
+import student.algorithm.VariableOrderHeuristic;
+
+import java.util.List;
+import java.util.Random;
+
+/***
+ * Mutable state of one search: the assignment, the domains with their trail,
+ * the propagators bound to the trail, the constraint counters and the heuristics with their weights
+ * and random generator. Each thread of the parallel search owns one.
+ */
+class SearchState {
+    final StaticAssignment assignment;
+    final Domain domains;
+    final List<Propagator> propagators;
+    final ConstraintEvaluator constraintEvaluator;
+    // Null if the ties are broken by the lowest id
+    final Random random;
+    final ConstraintWeights weights;
+    final ForwardChecking forwardChecking;
+    final VariableOrderHeuristic variableOrderHeuristic;
+    final ValueOrderHeuristic valueOrderHeuristic;
+    // False if the propagation at the root already failed
+    boolean isConsistent;
+
+    SearchState(StaticAssignment assignment, Domain domains, List<Propagator> propagators,
+                ConstraintEvaluator constraintEvaluator, Random random, ConstraintWeights weights,
+                ForwardChecking forwardChecking, VariableOrderHeuristic variableOrderHeuristic,
+                ValueOrderHeuristic valueOrderHeuristic){
+        this.assignment = assignment;
+        this.domains = domains;
+        this.propagators = propagators;
+        this.constraintEvaluator = constraintEvaluator;
+        this.random = random;
+        this.weights = weights;
+        this.forwardChecking = forwardChecking;
+        this.variableOrderHeuristic = variableOrderHeuristic;
+        this.valueOrderHeuristic = valueOrderHeuristic;
+    }
+}
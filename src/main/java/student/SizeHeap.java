@@ -0,0 +1,151 @@
+package student;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/***
+ * The unassigned variables in a binary min-heap ordered by the size of their domain and then by id.
+ * The domains move a variable in the heap when its size changes and remove it when it is assigned.
+ * All writes go to the trail of the domains, so restoring the domains restores the heap as well.
+ */
+public final class SizeHeap {
+    private final Trail trail;
+    private final int[] sizes;
+    private final int[] heap;
+    // Position of the variable in the heap, -1 once it is assigned
+    private final int[] positions;
+    private final int[] count = new int[1];
+    private final int[] stack;
+
+    SizeHeap(int[] sizes, Trail trail){
+        this.trail = trail;
+        this.sizes = sizes;
+        this.positions = new int[sizes.length];
+        this.stack = new int[sizes.length];
+        // A sorted array is a heap, so the initial order does not go to the trail
+        this.heap = new int[sizes.length];
+        Integer[] order = new Integer[sizes.length];
+        for(int var = 0; var < sizes.length; ++var){
+            order[var] = var;
+        }
+        Arrays.sort(order, (a, b) -> sizes[a] != sizes[b] ? Integer.compare(sizes[a], sizes[b]) : Integer.compare(a, b));
+        for(int i = 0; i < order.length; ++i){
+            heap[i] = order[i];
+            positions[order[i]] = i;
+        }
+        count[0] = sizes.length;
+    }
+
+    public int getCount(){
+        return count[0];
+    }
+
+    /***
+     * Returns the variable with the smallest domain and the lowest id, -1 if all variables are assigned
+     */
+    public int first(){
+        return count[0] > 0 ? heap[0] : -1;
+    }
+
+    /***
+     * Returns one of the variables with the smallest domain, each with the same probability,
+     * -1 if all variables are assigned. Only the top of the heap with the smallest size is visited.
+     */
+    public int sample(Random random){
+        if(count[0] == 0){
+            return -1;
+        }
+
+        int minimum = sizes[heap[0]];
+        int selected = -1;
+        int ties = 0;
+        int top = 0;
+        stack[top++] = 0;
+        while(top > 0){
+            int position = stack[--top];
+            int var = heap[position];
+            if(sizes[var] != minimum){
+                continue;
+            }
+
+            if(random.nextInt(++ties) == 0){
+                selected = var;
+            }
+
+            for(int child = 2 * position + 1; child <= 2 * position + 2 && child < count[0]; ++child){
+                stack[top++] = child;
+            }
+        }
+
+        return selected;
+    }
+
+    void update(int variable){
+        int position = positions[variable];
+        if(position >= 0 && !siftUp(position)){
+            siftDown(position);
+        }
+    }
+
+    void remove(int variable){
+        int position = positions[variable];
+        if(position < 0){
+            return;
+        }
+
+        int last = heap[count[0] - 1];
+        set(count, 0, count[0] - 1);
+        set(positions, variable, -1);
+        if(position < count[0]){
+            place(last, position);
+            update(last);
+        }
+    }
+
+    private boolean isBefore(int a, int b){
+        return sizes[a] < sizes[b] || (sizes[a] == sizes[b] && a < b);
+    }
+
+    private boolean siftUp(int position){
+        int var = heap[position];
+        int start = position;
+        while(position > 0 && isBefore(var, heap[(position - 1) / 2])){
+            place(heap[(position - 1) / 2], position);
+            position = (position - 1) / 2;
+        }
+
+        place(var, position);
+        return position != start;
+    }
+
+    private void siftDown(int position){
+        int var = heap[position];
+        while(2 * position + 1 < count[0]){
+            int child = 2 * position + 1;
+            if(child + 1 < count[0] && isBefore(heap[child + 1], heap[child])){
+                child++;
+            }
+
+            if(!isBefore(heap[child], var)){
+                break;
+            }
+
+            place(heap[child], position);
+            position = child;
+        }
+
+        place(var, position);
+    }
+
+    private void place(int variable, int position){
+        set(heap, position, variable);
+        set(positions, variable, position);
+    }
+
+    private void set(int[] array, int index, int value){
+        if(array[index] != value){
+            trail.save(array, index);
+            array[index] = value;
+        }
+    }
+}
@@ -1,17 +1,32 @@
 package student;
 
-import java.util.HashMap;
 import java.util.Map;
 
+/***
+ * Values of all variables of a solution, stored in an array indexed by the variable id
+ */
 public class Solution {
-    private final Map<String, Object> assignment;
+    private final VariableIndex index;
+    private final Object[] values;
 
     public Solution(Map<String, Object> assignment){
-        this.assignment = new HashMap<>(assignment);
+        this.index = new VariableIndex(assignment.keySet());
+        this.values = new Object[index.size()];
+        for(Map.Entry<String, Object> entry : assignment.entrySet()){
+            this.values[index.getId(entry.getKey())] = entry.getValue();
+        }
+    }
+
+    /***
+     * @param values values indexed by the variable ids of the index, the array is not copied
+     */
+    public Solution(VariableIndex index, Object[] values){
+        this.index = index;
+        this.values = values;
     }
 
     public Object get(String variable){
-        return this.assignment.get(variable);
+        return index.contains(variable) ? this.values[index.getId(variable)] : null;
     }
 
     @Override
@@ -21,14 +36,35 @@ public class Solution {
             return false;
         }
 
-        if(other.assignment.size() != this.assignment.size())
+        if(other.values.length != this.values.length)
             return false;
 
-        for(String key: this.assignment.keySet()){
-            if(!this.assignment.get(key).equals(other.assignment.get(key)))
+        for(int var = 0; var < this.values.length; ++var){
+            if(!this.values[var].equals(other.get(index.getName(var))))
                 return false;
         }
 
         return true;
     }
+
+    @Override
+    public int hashCode() {
+        int hash = 0;
+        for(int var = 0; var < this.values.length; ++var){
+            hash += mix(index.getName(var).hashCode() * 31 + this.values[var].hashCode());
+        }
+
+        return hash;
+    }
+
+    /***
+     * Spreads the bits of the pair hash, a plain sum of name ^ value collides for small integer values
+     */
+    private static int mix(int hash){
+        hash ^= hash >>> 16;
+        hash *= 0x85ebca6b;
+        hash ^= hash >>> 13;
+        hash *= 0xc2b2ae35;
+        return hash ^ (hash >>> 16);
+    }
 }
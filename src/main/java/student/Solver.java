@@ -1,7 +1,15 @@
 package student;
 
 import java.util.List;
+import java.util.stream.Stream;
 
 public interface Solver {
     List<Solution> solve();
+
+    /***
+     * Returns the solutions as a stream, solvers that can search lazily find the next solution only when it is pulled
+     */
+    default Stream<Solution> stream(){
+        return solve().stream();
+    }
 }
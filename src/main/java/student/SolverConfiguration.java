@@ -0,0 +1,112 @@
+package student;
+
+import student.algorithm.AC3;
+
+/***
+ * Settings of the BacktrackingSolver.
+ * The heuristics are given by the names accepted by ValueOrderHeuristicFactory
+ * and VariableOrderHeuristicFactory.
+ */
+public class SolverConfiguration {
+    private String valueHeuristic;
+    private String variableHeuristic;
+    private AC3.Mode arcConsistency = AC3.Mode.AC3RM;
+    // Number of worker threads, 1 searches in the calling thread
+    private int parallelism = 1;
+    // Depth of the search tree down to which the subtrees are split into parallel tasks
+    private int splitDepth = 4;
+    // Whether the parallel search returns the solutions in the order of the sequential one
+    private boolean deterministic = true;
+    // Fail limits of the restarts of the sequential search, null searches without restarts
+    private RestartSchedule restarts;
+    // Seed of the random tie-breaking of the heuristics, null breaks the ties by the lowest id
+    private Long randomSeed;
+    // Whether the sequential search jumps back to the deepest decision responsible for a failure
+    private boolean backjumping;
+
+    public SolverConfiguration(String valueHeuristic, String variableHeuristic){
+        this.valueHeuristic = valueHeuristic;
+        this.variableHeuristic = variableHeuristic;
+    }
+
+    public String getValueHeuristic(){
+        return valueHeuristic;
+    }
+
+    public SolverConfiguration setValueHeuristic(String valueHeuristic){
+        this.valueHeuristic = valueHeuristic;
+        return this;
+    }
+
+    public String getVariableHeuristic(){
+        return variableHeuristic;
+    }
+
+    public SolverConfiguration setVariableHeuristic(String variableHeuristic){
+        this.variableHeuristic = variableHeuristic;
+        return this;
+    }
+
+    public AC3.Mode getArcConsistency(){
+        return arcConsistency;
+    }
+
+    public SolverConfiguration setArcConsistency(AC3.Mode arcConsistency){
+        this.arcConsistency = arcConsistency;
+        return this;
+    }
+
+    public int getParallelism(){
+        return parallelism;
+    }
+
+    public SolverConfiguration setParallelism(int parallelism){
+        this.parallelism = parallelism;
+        return this;
+    }
+
+    public int getSplitDepth(){
+        return splitDepth;
+    }
+
+    public SolverConfiguration setSplitDepth(int splitDepth){
+        this.splitDepth = splitDepth;
+        return this;
+    }
+
+    public boolean isDeterministic(){
+        return deterministic;
+    }
+
+    public SolverConfiguration setDeterministic(boolean deterministic){
+        this.deterministic = deterministic;
+        return this;
+    }
+
+    public RestartSchedule getRestarts(){
+        return restarts;
+    }
+
+    public SolverConfiguration setRestarts(RestartSchedule restarts){
+        this.restarts = restarts;
+        return this;
+    }
+
+    public Long getRandomSeed(){
+        return randomSeed;
+    }
+
+    public SolverConfiguration setRandomSeed(Long randomSeed){
+        this.randomSeed = randomSeed;
+        return this;
+    }
+
+    public boolean isBackjumping(){
+        return backjumping;
+    }
+
+    public SolverConfiguration setBackjumping(boolean backjumping){
+        this.backjumping = backjumping;
+        return this;
+    }
+}
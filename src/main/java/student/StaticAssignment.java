@@ -1,31 +1,137 @@
 package student;
 
 import java.security.InvalidParameterException;
+import java.util.AbstractSet;
 import java.util.HashMap;
-import java.util.HashSet;
+import java.util.Iterator;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Set;
 
+/***
+ * Assignment stored in arrays indexed by the variable id.
+ * Assigned variables are kept in a bitmap and the unassigned ones in a sparse set,
+ * so set, reset, isAssigned and access to the unassigned variables are all O(1).
+ * Variables unknown to the index are added to it on the first set.
+ */
 public class StaticAssignment implements Assignment {
-    private Map<String, Object> values = new HashMap<>();
-    private Set<String> cachedAssignedVariables = new HashSet<>();
-    private Integer assignedCount = 0;
+    private final VariableIndex index;
+    private Object[] values;
+    private int[] codes;
+    private long[] assigned;
+    // Sparse set of unassigned variables, unassigned[0..unassignedCount) and their positions.
+    // Resetting the variables in the reverse order of their assignment restores the order of the unassigned
+    // variables, the heuristics that break ties at random then choose the same way after backtracking
+    private int[] unassigned;
+    private int[] positions;
+    // Position of the variable in the sparse set before it was assigned
+    private int[] origins;
+    private int unassignedCount;
+    private int assignedCount;
+    // Number of variables added to the sparse set, the arrays may be longer
+    private int variableCount;
+
+    public StaticAssignment(){
+        this(new VariableIndex());
+    }
+
+    public StaticAssignment(VariableIndex index){
+        this.index = index;
+        this.values = new Object[0];
+        this.codes = new int[0];
+        this.assigned = new long[0];
+        this.unassigned = new int[0];
+        this.positions = new int[0];
+        this.origins = new int[0];
+        ensureCapacity(index.size());
+    }
+
+    private void ensureCapacity(int variableCount){
+        int capacity = values.length;
+        if(variableCount > capacity){
+            int newCapacity = Math.max(variableCount, capacity * 2);
+            Object[] newValues = new Object[newCapacity];
+            int[] newCodes = new int[newCapacity];
+            long[] newAssigned = new long[(newCapacity + 63) >>> 6];
+            int[] newUnassigned = new int[newCapacity];
+            int[] newPositions = new int[newCapacity];
+            int[] newOrigins = new int[newCapacity];
+            System.arraycopy(values, 0, newValues, 0, capacity);
+            System.arraycopy(codes, 0, newCodes, 0, capacity);
+            System.arraycopy(assigned, 0, newAssigned, 0, assigned.length);
+            System.arraycopy(unassigned, 0, newUnassigned, 0, this.variableCount);
+            System.arraycopy(positions, 0, newPositions, 0, capacity);
+            System.arraycopy(origins, 0, newOrigins, 0, capacity);
+            values = newValues;
+            codes = newCodes;
+            assigned = newAssigned;
+            unassigned = newUnassigned;
+            positions = newPositions;
+            origins = newOrigins;
+        }
+
+        // Only the variables of the index are unassigned, not the spare capacity
+        for(int var = this.variableCount; var < variableCount; ++var){
+            positions[var] = var;
+            unassigned[var] = var;
+            swap(var, unassignedCount++);
+        }
+        this.variableCount = Math.max(this.variableCount, variableCount);
+    }
+
+    private int getId(String name){
+        if(!index.contains(name)){
+            int id = index.add(name);
+            ensureCapacity(index.size());
+            return id;
+        }
+
+        return index.getId(name);
+    }
 
     @Override
     public <TValue> TValue getValue(String name) {
-        return (TValue)this.getValues().get(name);
+        return index.contains(name) ? this.getValue(index.getId(name)) : null;
+    }
+
+    @Override
+    public <TValue> TValue getValue(int variable) {
+        return (TValue)this.values[variable];
+    }
+
+    @Override
+    public int getInt(int variable) {
+        return this.codes[variable];
+    }
+
+    @Override
+    public boolean isAssigned(int variable) {
+        return (assigned[variable >>> 6] & (1L << variable)) != 0;
     }
 
     @Override
     public Assignment reset(String name){
-        if(this.cachedAssignedVariables.remove(name)){
-            this.values.remove(name);
-            this.assignedCount--;
+        if(!index.contains(name)){
+            throw new InvalidParameterException("Name is invalid");
         }
-        else{
+
+        return this.reset(index.getId(name));
+    }
+
+    @Override
+    public Assignment reset(int variable){
+        if(!isAssigned(variable)){
             throw new InvalidParameterException("Name is invalid");
         }
 
+        assigned[variable >>> 6] &= ~(1L << variable);
+        values[variable] = null;
+        swap(variable, unassignedCount);
+        if(origins[variable] < unassignedCount){
+            swap(variable, origins[variable]);
+        }
+        unassignedCount++;
+        assignedCount--;
         return this;
     }
 
@@ -34,9 +140,35 @@ public class StaticAssignment implements Assignment {
         return assignedCount;
     }
 
+    @Override
+    public int getUnassignedCount(){
+        return unassignedCount;
+    }
+
+    @Override
+    public int getUnassignedVariable(int i){
+        return unassigned[i];
+    }
+
     @Override
     public Map<String, Object> getValues(){
-        return this.values;
+        Map<String, Object> result = new HashMap<>(assignedCount * 2);
+        for(int var = 0; var < index.size(); ++var){
+            if(isAssigned(var)){
+                result.put(index.getName(var), values[var]);
+            }
+        }
+
+        return result;
+    }
+
+    /***
+     * Returns a copy of the values indexed by the variable id
+     */
+    public Object[] toArray(){
+        Object[] result = new Object[index.size()];
+        System.arraycopy(values, 0, result, 0, result.length);
+        return result;
     }
 
     @Override
@@ -49,14 +181,75 @@ public class StaticAssignment implements Assignment {
 
     @Override
     public Set<String> getAssignedVariables(){
-        return this.cachedAssignedVariables;
+        return new AbstractSet<String>() {
+            @Override
+            public boolean contains(Object o) {
+                return o instanceof String && index.contains((String)o) && isAssigned(index.getId((String)o));
+            }
+
+            @Override
+            public Iterator<String> iterator() {
+                return new Iterator<String>() {
+                    private int next = advance(0);
+
+                    private int advance(int var){
+                        while(var < index.size() && !isAssigned(var)){
+                            var++;
+                        }
+                        return var;
+                    }
+
+                    @Override
+                    public boolean hasNext() {
+                        return next < index.size();
+                    }
+
+                    @Override
+                    public String next() {
+                        if(!hasNext()){
+                            throw new NoSuchElementException();
+                        }
+
+                        String name = index.getName(next);
+                        next = advance(next + 1);
+                        return name;
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return assignedCount;
+            }
+        };
     }
 
     @Override
     public Assignment set(String name, Object value){
-        this.cachedAssignedVariables.add(name);
-        this.values.put(name, value);
-        this.assignedCount++;
+        return this.set(getId(name), value);
+    }
+
+    @Override
+    public Assignment set(int variable, Object value){
+        values[variable] = value;
+        codes[variable] = Assignment.toInt(value);
+        if(!isAssigned(variable)){
+            assigned[variable >>> 6] |= 1L << variable;
+
+            // Remove from the sparse set by swapping it with the last unassigned variable
+            origins[variable] = positions[variable];
+            swap(variable, --unassignedCount);
+            assignedCount++;
+        }
+
         return this;
     }
+
+    private void swap(int variable, int position){
+        int other = unassigned[position];
+        unassigned[positions[variable]] = other;
+        positions[other] = positions[variable];
+        unassigned[position] = variable;
+        positions[variable] = position;
+    }
 }
@@ -0,0 +1,66 @@
+package student;
+
+/***
+ * Undo log for the reversible state of the search.
+ * Every write to a reversible array is preceded by save(array, index), which records the old value.
+ * restore(mark) rewinds all the writes done since mark() was called.
+ */
+public final class Trail {
+    private static final int INITIAL_CAPACITY = 256;
+
+    private Object[] arrays = new Object[INITIAL_CAPACITY];
+    private int[] indices = new int[INITIAL_CAPACITY];
+    private long[] values = new long[INITIAL_CAPACITY];
+    private int size;
+
+    public void save(long[] array, int index){
+        push(array, index, array[index]);
+    }
+
+    public void save(int[] array, int index){
+        push(array, index, array[index]);
+    }
+
+    private void push(Object array, int index, long value){
+        if(size == arrays.length){
+            grow();
+        }
+
+        arrays[size] = array;
+        indices[size] = index;
+        values[size] = value;
+        size++;
+    }
+
+    private void grow(){
+        int capacity = arrays.length * 2;
+        Object[] newArrays = new Object[capacity];
+        int[] newIndices = new int[capacity];
+        long[] newValues = new long[capacity];
+        System.arraycopy(arrays, 0, newArrays, 0, size);
+        System.arraycopy(indices, 0, newIndices, 0, size);
+        System.arraycopy(values, 0, newValues, 0, size);
+        arrays = newArrays;
+        indices = newIndices;
+        values = newValues;
+    }
+
+    public int mark(){
+        return size;
+    }
+
+    public void restore(int mark){
+        while(size > mark){
+            size--;
+            Object array = arrays[size];
+            if(array instanceof long[]){
+                ((long[])array)[indices[size]] = values[size];
+            }
+            else{
+                ((int[])array)[indices[size]] = (int)values[size];
+            }
+
+            arrays[size] = null;
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package student;
+
+import java.security.InvalidParameterException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/***
+ * Maps variable names to dense integer ids (0..size-1) and back.
+ * The solver works on the ids only, names are used at the API boundary.
+ */
+public class VariableIndex {
+    private final List<String> names;
+    private final Map<String, Integer> ids;
+
+    public VariableIndex(){
+        this.names = new ArrayList<>();
+        this.ids = new HashMap<>();
+    }
+
+    public VariableIndex(Collection<String> variables){
+        this.names = new ArrayList<>(variables.size());
+        this.ids = new HashMap<>(variables.size() * 2);
+        for(String var : variables){
+            add(var);
+        }
+    }
+
+    public int add(String name){
+        Integer id = ids.get(name);
+        if(id == null){
+            id = names.size();
+            names.add(name);
+            ids.put(name, id);
+        }
+
+        return id;
+    }
+
+    public boolean contains(String name){
+        return ids.containsKey(name);
+    }
+
+    public int getId(String name){
+        Integer id = ids.get(name);
+        if(id == null){
+            throw new InvalidParameterException("Unknown variable " + name);
+        }
+
+        return id;
+    }
+
+    public String getName(int id){
+        return names.get(id);
+    }
+
+    public List<String> getNames(){
+        return names;
+    }
+
+    public int size(){
+        return names.size();
+    }
+}
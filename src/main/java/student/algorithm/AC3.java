@@ -2,21 +2,62 @@ package student.algorithm;
 
 import student.Assignment;
 import student.BinaryConstraintLookup;
+import student.BinarySupports;
+import student.CompiledCSP;
 import student.Domain;
+import student.Trail;
 import student.constraints.Constraint;
 
 import java.util.*;
 
-public class AC3 {
-    private final Collection<String> variables;
-    private final BinaryConstraintLookup constraintLookup;
+public class AC3 implements Propagator {
+    public enum Mode {
+        // Every revision searches the supports from scratch
+        AC3,
+        // The last found support of each value is checked first (AC-3rm)
+        AC3RM,
+        // The search for a support resumes after the last found support, which is kept on the trail (AC-2001)
+        AC2001
+    }
 
-    public AC3(Collection<String> variables, BinaryConstraintLookup constraintLookup){
-        this.variables = variables;
+    // Scanning a domain this small is as cheap as checking a residue
+    private static final int SMALL_DOMAIN = 8;
+
+    private final CompiledCSP csp;
+    private final BinaryConstraintLookup constraintLookup;
+    private final BinarySupports binarySupports;
+    private final ConstraintWeights weights;
+    private final Mode mode;
+    private final Trail trail;
+    // residues[arc(var2, var1)][val2] is the last found support of val2 in the domain of var1
+    private final int[][] residues;
+
+    // Queue of the arcs (x,y) to revise, the domain of y is revised against the domain of x
+    private final int[] queue;
+    private final boolean[] inQueue;
+    private int queueHead;
+    private int queueSize;
+    // Domain sizes seen by the last propagation, kept on the trail. Variables whose size differs have changed since.
+    private final int[] lastSizes;
+    // Union of the supports of a revised domain
+    private long[] supportBuffer = new long[0];
+
+    public AC3(CompiledCSP csp, BinaryConstraintLookup constraintLookup, BinarySupports binarySupports,
+               ConstraintWeights weights, Mode mode, Trail trail){
+        this.csp = csp;
         this.constraintLookup = constraintLookup;
+        this.binarySupports = binarySupports;
+        this.weights = weights;
+        this.mode = mode;
+        this.trail = trail;
+        this.residues = new int[constraintLookup.getArcCount()][];
+        this.queue = new int[constraintLookup.getArcCount()];
+        this.inQueue = new boolean[constraintLookup.getArcCount()];
+        this.lastSizes = new int[csp.getVariableCount()];
+        Arrays.fill(this.lastSizes, -1);
     }
 
-    private boolean evaluateConstraints(Assignment assignment, Collection<Constraint> constraints){
+    private boolean evaluateConstraints(Assignment assignment, Constraint[] constraints){
         for(Constraint constraint : constraints) {
             if (!constraint.evaluate(assignment)) {
                 return false;
@@ -26,58 +67,170 @@ public class AC3 {
         return true;
     }
 
-    public void filterDomain(Assignment assignment, Domain domain){
-        List<String> allVariables = new LinkedList<>(this.variables);
-        allVariables.removeAll(assignment.getAssignedVariables());
-        Queue<String> variables = new LinkedList<String>(allVariables);
+    @Override
+    public int propagate(Assignment assignment, Domain domains) {
+        return filterDomain(assignment, domains);
+    }
 
+    /***
+     * Revises only the arcs leaving the variables whose domains changed since the last call.
+     * Returns the number of removed values, -1 if a domain became empty
+     */
+    public int filterDomain(Assignment assignment, Domain domain){
+        for(int i = 0; i < assignment.getUnassignedCount(); ++i){
+            int var = assignment.getUnassignedVariable(i);
+            if(domain.size(var) != lastSizes[var]){
+                enqueueArcs(assignment, domain, var);
+            }
+        }
 
-        while(!variables.isEmpty()){
-            String x = variables.poll();
-            for(String y:allVariables){
-                if(removeValues(assignment, domain, x,y)){
-                    if(domain.get(y).size() == 0){
-                        return;
-                    }
+        int removedValues = 0;
+        while(queueSize > 0){
+            int arc = poll();
+            int x = constraintLookup.getArcSource(arc);
+            int y = constraintLookup.getArcTarget(arc);
+            if(assignment.isAssigned(x) || assignment.isAssigned(y)){
+                continue;
+            }
 
-                    variables.add(y);
+            domain.explainBy(x);
+            int removed = removeValues(assignment, domain, arc, x, y);
+            if(removed > 0){
+                if(domain.size(y) == 0){
+                    weights.increment(constraintLookup.getArcConstraintIds(arc));
+                    clearQueue();
+                    return -1;
                 }
+
+                removedValues += removed;
+                enqueueArcs(assignment, domain, y);
             }
         }
 
-        return;
+        return removedValues;
+    }
+
+    private void enqueueArcs(Assignment assignment, Domain domain, int var){
+        int size = domain.size(var);
+        if(lastSizes[var] != size){
+            trail.save(lastSizes, var);
+            lastSizes[var] = size;
+        }
+
+        int end = constraintLookup.getArcOffset(var + 1);
+        for(int arc = constraintLookup.getArcOffset(var); arc < end; ++arc){
+            if(!inQueue[arc] && !assignment.isAssigned(constraintLookup.getArcTarget(arc))){
+                inQueue[arc] = true;
+                queue[(queueHead + queueSize++) % queue.length] = arc;
+            }
+        }
+    }
+
+    private int poll(){
+        int arc = queue[queueHead];
+        queueHead = (queueHead + 1) % queue.length;
+        queueSize--;
+        inQueue[arc] = false;
+        return arc;
+    }
+
+    private void clearQueue(){
+        while(queueSize > 0){
+            poll();
+        }
+    }
+
+    private int[] getResidues(int arc, int variable){
+        int[] last = residues[arc];
+        if(last == null){
+            last = new int[csp.getValueCount(variable)];
+            Arrays.fill(last, -1);
+            residues[arc] = last;
+        }
+
+        return last;
     }
 
-    private boolean removeValues(Assignment assignment, Domain domain, String var1, String var2){
-        boolean removed = false;
-        Collection<Constraint> constraints = constraintLookup.getConstraints(var1, var2);
-        if(constraints == null || constraints.isEmpty())
+    private int removeValues(Assignment assignment, Domain domain, int arc, int var1, int var2){
+        long[][] matrix = binarySupports.getMatrix(arc);
+        if(matrix != null){
+            // The values of var2 supported by any value of var1
+            int wordCount = domain.getWordCount(var2);
+            if(supportBuffer.length < wordCount){
+                supportBuffer = new long[wordCount];
+            }
+
+            Arrays.fill(supportBuffer, 0, wordCount, 0L);
+            for(int val1 = domain.first(var1); val1 >= 0; val1 = domain.next(var1, val1 + 1)){
+                long[] row = matrix[val1];
+                for(int i = 0; i < wordCount; ++i){
+                    supportBuffer[i] |= row[i];
+                }
+            }
+
+            return domain.retain(var2, supportBuffer);
+        }
+
+        matrix = binarySupports.getMatrix(constraintLookup.getReverseArc(arc));
+        if(matrix != null){
+            int removed = 0;
+            for(int val2 = domain.first(var2); val2 >= 0; val2 = domain.next(var2, val2 + 1)){
+                if(!domain.intersects(var1, matrix[val2])){
+                    domain.remove(var2, val2);
+                    removed++;
+                }
+            }
+
             return removed;
+        }
+
+        return removeValuesByEvaluation(assignment, domain, arc, var1, var2);
+    }
 
-        List<Object> valuesToRestrict = new LinkedList<>();
-        for(Object val2 : domain.get(var2)){
-            assignment = assignment.set(var2, val2);
+    private int removeValuesByEvaluation(Assignment assignment, Domain domain, int arc, int var1, int var2){
+        int removed = 0;
+        Constraint[] constraints = constraintLookup.getArcConstraints(arc);
+        int[] last = (mode != Mode.AC3 && csp.getValueCount(var1) > SMALL_DOMAIN) ?
+                getResidues(constraintLookup.getReverseArc(arc), var2) : null;
+
+        for(int val2 = domain.first(var2); val2 >= 0; val2 = domain.next(var2, val2 + 1)){
+            int start = domain.first(var1);
+            if(last != null && last[val2] >= 0){
+                if(domain.contains(var1, last[val2])){
+                    // The constraints are static, so a support stays a support while it is in the domain
+                    continue;
+                }
+
+                if(mode == Mode.AC2001){
+                    // There is no support before the last one
+                    start = domain.next(var1, last[val2] + 1);
+                }
+            }
+
+            assignment = assignment.set(var2, csp.getValue(var2, val2));
             boolean isAnySatisfied = false;
-            for(Object val1 : domain.get(var1)){
-                assignment = assignment.set(var1, val1);
+            for(int val1 = start; val1 >= 0; val1 = domain.next(var1, val1 + 1)){
+                assignment = assignment.set(var1, csp.getValue(var1, val1));
                 if(evaluateConstraints(assignment, constraints)){
                     isAnySatisfied = true;
                     assignment = assignment.reset(var1);
+                    if(last != null){
+                        if(mode == Mode.AC2001){
+                            trail.save(last, val2);
+                        }
+                        last[val2] = val1;
+                    }
                     break;
                 }
                 assignment = assignment.reset(var1);
             }
 
-            if(!isAnySatisfied){
-                valuesToRestrict.add(val2);
-                removed = true;
-            }
-
             assignment = assignment.reset(var2);
-        }
 
-        if(removed){
-            domain.restrict(var2, valuesToRestrict);
+            if(!isAnySatisfied){
+                domain.remove(var2, val2);
+                removed++;
+            }
         }
 
         return removed;
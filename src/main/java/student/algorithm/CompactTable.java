@@ -0,0 +1,140 @@
+package student.algorithm;
+
+import student.Assignment;
+import student.CompiledCSP;
+import student.Domain;
+import student.Trail;
+import student.constraints.TableConstraint;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/***
+ * Compact-Table propagator for TableConstraint.
+ * The tuples that are still valid are kept in a reversible sparse bitset,
+ * for each variable and value there is a bitset of the tuples supporting it.
+ * One propagation updates the valid tuples from the variables whose domains changed
+ * and then removes every value with no valid supporting tuple.
+ */
+public class CompactTable implements Propagator {
+    private final CompiledCSP csp;
+    private final Trail trail;
+    private final int[] scope;
+    private final long[][][] supports;
+    private final int[][] residues;
+    private final int[] lastSizes;
+    private final ReversibleSparseBitSet validTuples;
+
+    public CompactTable(CompiledCSP csp, TableConstraint constraint, Trail trail){
+        this.csp = csp;
+        this.trail = trail;
+        List<String> variables = constraint.getVariables();
+        this.scope = new int[variables.size()];
+        for(int i = 0; i < scope.length; ++i){
+            scope[i] = csp.getVariableIndex().getId(variables.get(i));
+        }
+
+        // Tuples with a value outside of the domain are never valid
+        List<int[]> tuples = new ArrayList<>();
+        for(Object[] tuple : constraint.getTuples()){
+            int[] valueTuple = new int[scope.length];
+            boolean isValid = true;
+            for(int i = 0; i < scope.length && isValid; ++i){
+                valueTuple[i] = csp.getValueId(scope[i], tuple[i]);
+                isValid = valueTuple[i] >= 0;
+            }
+
+            if(isValid){
+                tuples.add(valueTuple);
+            }
+        }
+
+        this.supports = new long[scope.length][][];
+        this.residues = new int[scope.length][];
+        for(int i = 0; i < scope.length; ++i){
+            int valueCount = csp.getValueCount(scope[i]);
+            supports[i] = new long[valueCount][];
+            residues[i] = new int[valueCount];
+            for(int value = 0; value < valueCount; ++value){
+                supports[i][value] = ReversibleSparseBitSet.createWords(tuples.size());
+            }
+        }
+
+        for(int t = 0; t < tuples.size(); ++t){
+            int[] tuple = tuples.get(t);
+            for(int i = 0; i < scope.length; ++i){
+                supports[i][tuple[i]][t >>> 6] |= 1L << t;
+                residues[i][tuple[i]] = t >>> 6;
+            }
+        }
+
+        this.validTuples = new ReversibleSparseBitSet(trail, tuples.size());
+        this.lastSizes = new int[scope.length];
+        for(int i = 0; i < scope.length; ++i){
+            lastSizes[i] = -1;
+        }
+    }
+
+    private boolean updateTable(Domain domains){
+        for(int i = 0; i < scope.length; ++i){
+            int var = scope[i];
+            if(domains.size(var) == lastSizes[i]){
+                continue;
+            }
+
+            validTuples.clearMask();
+            for(int value = domains.first(var); value >= 0; value = domains.next(var, value + 1)){
+                validTuples.addToMask(supports[i][value]);
+            }
+
+            validTuples.intersectWithMask();
+            if(validTuples.isEmpty()){
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    @Override
+    public int[] getScope() {
+        return scope;
+    }
+
+    @Override
+    public int propagate(Assignment assignment, Domain domains) {
+        if(!updateTable(domains)){
+            return -1;
+        }
+
+        int removedValues = 0;
+        for(int i = 0; i < scope.length; ++i){
+            int var = scope[i];
+            for(int value = domains.first(var); value >= 0; value = domains.next(var, value + 1)){
+                long[] support = supports[i][value];
+                if(!validTuples.intersects(support, residues[i][value])){
+                    int residue = validTuples.intersectIndex(support);
+                    if(residue < 0){
+                        domains.remove(var, value);
+                        removedValues++;
+                    }
+                    else{
+                        residues[i][value] = residue;
+                    }
+                }
+            }
+
+            int size = domains.size(var);
+            if(size == 0){
+                return -1;
+            }
+
+            if(lastSizes[i] != size){
+                trail.save(lastSizes, i);
+                lastSizes[i] = size;
+            }
+        }
+
+        return removedValues;
+    }
+}
@@ -0,0 +1,35 @@
+package student.algorithm;
+
+import java.util.Arrays;
+
+/***
+ * Weights of the constraints for the dom/wdeg heuristic.
+ * Every weight starts at 1 and is increased each time the constraint empties a domain
+ * in forward checking or AC3 of the search, the values the heuristics only try out do not count.
+ * Every search state has its own weights.
+ */
+public class ConstraintWeights {
+    private final int[] weights;
+
+    public ConstraintWeights(int constraintCount){
+        this.weights = new int[constraintCount];
+        Arrays.fill(weights, 1);
+    }
+
+    public int get(int constraint){
+        return weights[constraint];
+    }
+
+    /***
+     * Sets every weight back to 1
+     */
+    public void reset(){
+        Arrays.fill(weights, 1);
+    }
+
+    public void increment(int[] constraints){
+        for(int constraint : constraints){
+            weights[constraint]++;
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package student.algorithm;
+
+import student.Assignment;
+import student.CompiledCSP;
+import student.Domain;
+
+import java.util.Random;
+
+/***
+ * dom/wdeg: selects the variable with the smallest ratio of the domain size to the weighted degree.
+ * The weighted degree sums the weights of the constraints that have another unassigned variable,
+ * ties are broken by the larger number of such constraints and then by the lower variable id (or at random).
+ */
+public final class DomWdegVariableHeuristic implements VariableOrderHeuristic {
+    private final CompiledCSP csp;
+    private final ConstraintWeights weights;
+    private final Random random;
+
+    public DomWdegVariableHeuristic(CompiledCSP csp, ConstraintWeights weights) {
+        this(csp, weights, null);
+    }
+
+    public DomWdegVariableHeuristic(CompiledCSP csp, ConstraintWeights weights, Random random) {
+        this.csp = csp;
+        this.weights = weights;
+        this.random = random;
+    }
+
+    @Override
+    public int selectVariable(Assignment assignment, Domain domains) {
+        int selectedVar = -1;
+        long selectedSize = 0;
+        long selectedWeight = 0;
+        int selectedDegree = 0;
+        int ties = 0;
+        for (int i = 0; i < assignment.getUnassignedCount(); ++i) {
+            int var = assignment.getUnassignedVariable(i);
+            long weight = 0;
+            int degree = 0;
+            for(int constraint : csp.getVariableConstraints(var)){
+                if(hasOtherUnassigned(assignment, constraint, var)){
+                    weight += weights.get(constraint);
+                    degree++;
+                }
+            }
+
+            // size / weight < selectedSize / selectedWeight, a zero weight is the largest ratio
+            long size = domains.size(var);
+            long difference = weight == 0 && selectedWeight == 0
+                    ? size - selectedSize
+                    : size * selectedWeight - selectedSize * weight;
+            boolean isTie = selectedVar >= 0 && difference == 0 && degree == selectedDegree;
+            if(selectedVar < 0 || difference < 0 || (difference == 0 && degree > selectedDegree)
+                    || (isTie && Heuristic.winsTie(random, ++ties, var, selectedVar))){
+                selectedVar = var;
+                selectedSize = size;
+                selectedWeight = weight;
+                selectedDegree = degree;
+                ties = isTie ? ties : 1;
+            }
+        }
+
+        return selectedVar;
+    }
+
+    private boolean hasOtherUnassigned(Assignment assignment, int constraint, int variable){
+        for(int var : csp.getScope(constraint)){
+            if(var != variable && !assignment.isAssigned(var)){
+                return true;
+            }
+        }
+
+        return false;
+    }
+}
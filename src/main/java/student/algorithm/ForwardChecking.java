@@ -2,39 +2,128 @@ package student.algorithm;
 
 import student.Assignment;
 import student.BinaryConstraintLookup;
+import student.BinarySupports;
+import student.CompiledCSP;
 import student.Domain;
 import student.constraints.Constraint;
 
-import java.util.ArrayList;
-import java.util.Collection;
-import java.util.List;
-
 public class ForwardChecking {
+    private final CompiledCSP csp;
     private final BinaryConstraintLookup binaryConstraintLookup;
+    private final BinarySupports binarySupports;
+    private final ConstraintWeights weights;
 
-    public ForwardChecking(BinaryConstraintLookup binaryConstraintLookup){
+    public ForwardChecking(CompiledCSP csp, BinaryConstraintLookup binaryConstraintLookup, BinarySupports binarySupports,
+                           ConstraintWeights weights){
+        this.csp = csp;
         this.binaryConstraintLookup = binaryConstraintLookup;
+        this.binarySupports = binarySupports;
+        this.weights = weights;
+    }
+
+    private int wipeout(int arc, boolean isProbe){
+        if(!isProbe){
+            weights.increment(binaryConstraintLookup.getArcConstraintIds(arc));
+        }
+        return -1;
+    }
+
+    /***
+     * Runs forward checking and records the domains of the neighbours it pruned, returns null on a wipeout.
+     * The domains are left pruned, the caller restores them. Like probe, a wipeout does not change the weights.
+     */
+    public PrunedDomains record(Assignment assignment, int assignedVariable, int assignedValue, Domain domains){
+        int start = binaryConstraintLookup.getArcOffset(assignedVariable);
+        int end = binaryConstraintLookup.getArcOffset(assignedVariable + 1);
+        int[] sizes = new int[end - start];
+        for(int arc = start; arc < end; ++arc){
+            sizes[arc - start] = domains.size(binaryConstraintLookup.getArcTarget(arc));
+        }
+
+        int removed = check(assignment, assignedVariable, assignedValue, domains, true);
+        if(removed < 0){
+            return null;
+        }
+
+        int count = 0;
+        for(int arc = start; arc < end; ++arc){
+            if(domains.size(binaryConstraintLookup.getArcTarget(arc)) != sizes[arc - start]){
+                sizes[count++] = binaryConstraintLookup.getArcTarget(arc);
+            }
+        }
+
+        int[] variables = new int[count];
+        long[][] values = new long[count][];
+        for(int i = 0; i < count; ++i){
+            variables[i] = sizes[i];
+            values[i] = domains.copyValues(sizes[i]);
+        }
+
+        return new PrunedDomains(assignedVariable, removed, variables, values);
     }
 
     public int execute(Assignment assignment,
-                                String assignedVariable,
-                                Domain domains,
-                                Collection<String> unassignedVariables){
+                                int assignedVariable,
+                                int assignedValue,
+                                Domain domains){
+        return check(assignment, assignedVariable, assignedValue, domains, false);
+    }
+
+    /***
+     * Runs forward checking like execute for a value the search only tries out, a wipeout is not
+     * a failure of the search and does not change the weights of the constraints
+     */
+    public int probe(Assignment assignment, int assignedVariable, int assignedValue, Domain domains){
+        return check(assignment, assignedVariable, assignedValue, domains, true);
+    }
+
+    private int check(Assignment assignment, int assignedVariable, int assignedValue, Domain domains,
+                      boolean isProbe){
         // For speed of the algorithm, we will only consider the binary constraints
+        // Only the neighbours of the assigned variable can lose values
         int removedValues = 0;
-        for(String var : unassignedVariables){
-            Collection<Constraint> constraints = binaryConstraintLookup.getConstraints(var, assignedVariable);
+        domains.explainBy(assignedVariable);
+        int end = binaryConstraintLookup.getArcOffset(assignedVariable + 1);
+        for(int arc = binaryConstraintLookup.getArcOffset(assignedVariable); arc < end; ++arc){
+            int var = binaryConstraintLookup.getArcTarget(arc);
+            if(assignment.isAssigned(var)){
+                continue;
+            }
+
+            long[][] matrix = binarySupports.getMatrix(arc);
+            if(matrix != null){
+                // Keep the values compatible with the assigned value
+                removedValues += domains.retain(var, matrix[assignedValue]);
+                if(domains.size(var) == 0){
+                    return wipeout(arc, isProbe);
+                }
+                continue;
+            }
+
+            matrix = binarySupports.getMatrix(binaryConstraintLookup.getReverseArc(arc));
+            if(matrix != null){
+                for(int val = domains.first(var); val >= 0; val = domains.next(var, val + 1)) {
+                    if((matrix[val][assignedValue >>> 6] & (1L << assignedValue)) == 0){
+                        domains.remove(var, val);
+                        removedValues++;
+                    }
+                }
+
+                if(domains.size(var) == 0){
+                    return wipeout(arc, isProbe);
+                }
+                continue;
+            }
+
+            Constraint[] constraints = binaryConstraintLookup.getArcConstraints(arc);
             boolean isAnyValid = false;
-            List<Object> invalidValues = new ArrayList<>();
-            for(Object val: domains.get(var)) {
-                assignment = assignment.set(var, val);
+            for(int val = domains.first(var); val >= 0; val = domains.next(var, val + 1)) {
+                assignment = assignment.set(var, csp.getValue(var, val));
                 boolean isValid = true;
-                if (constraints != null) {
-                    for (Constraint constr : constraints) {
-                        if (!constr.evaluate(assignment)) {
-                            isValid = false;
-                            break;
-                        }
+                for (Constraint constr : constraints) {
+                    if (!constr.evaluate(assignment)) {
+                        isValid = false;
+                        break;
                     }
                 }
 
@@ -42,17 +131,15 @@ public class ForwardChecking {
                     isAnyValid = true;
                 }
                 else{
-                    invalidValues.add(val);
+                    domains.remove(var, val);
                     removedValues++;
                 }
                 assignment = assignment.reset(var);
             }
 
-            domains.restrict(var, invalidValues);
-
             if(!isAnyValid){
                 // Empty domain
-                return -1;
+                return wipeout(arc, isProbe);
             }
         }
 
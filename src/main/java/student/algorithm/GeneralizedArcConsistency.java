@@ -0,0 +1,182 @@
+package student.algorithm;
+
+import student.Assignment;
+import student.CompiledCSP;
+import student.Domain;
+import student.Trail;
+import student.constraints.Constraint;
+
+import java.util.Arrays;
+
+/***
+ * GAC-schema propagator for a constraint of any arity given only by its evaluate method.
+ * A value is kept if some tuple of the current domains containing it satisfies the constraint.
+ * Found supports are cached as residues for every value of the tuple and reused while they stay valid.
+ * Constraints with more than MAX_ARITY variables are not propagated and a variable is skipped
+ * while the domains of the others allow more than MAX_TUPLES tuples.
+ */
+public class GeneralizedArcConsistency implements Propagator {
+    public static final int MAX_ARITY = 8;
+    public static final long MAX_TUPLES = 1L << 16;
+
+    private final CompiledCSP csp;
+    private final Constraint constraint;
+    private final Assignment tupleAssignment;
+    private final Trail trail;
+    private final int[] scope;
+    private final int[][][] residues;
+    private final int[] lastSizes;
+    private final int[] tuple;
+
+    /***
+     * @param tupleAssignment assignment used to evaluate the tuples, it can be shared by the propagators of one search
+     */
+    public GeneralizedArcConsistency(CompiledCSP csp, int constraint, Assignment tupleAssignment, Trail trail){
+        this.csp = csp;
+        this.constraint = csp.getConstraint(constraint);
+        this.tupleAssignment = tupleAssignment;
+        this.trail = trail;
+        this.scope = csp.getScope(constraint);
+        this.residues = new int[scope.length][][];
+        for(int i = 0; i < scope.length; ++i){
+            residues[i] = new int[csp.getValueCount(scope[i])][];
+        }
+
+        this.lastSizes = new int[scope.length];
+        Arrays.fill(lastSizes, -1);
+        this.tuple = new int[scope.length];
+    }
+
+    public static boolean isApplicable(CompiledCSP csp, int constraint){
+        int arity = csp.getScope(constraint).length;
+        return arity > 2 && arity <= MAX_ARITY;
+    }
+
+    private boolean isChanged(Domain domains){
+        for(int i = 0; i < scope.length; ++i){
+            if(domains.size(scope[i]) != lastSizes[i]){
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    @Override
+    public int[] getScope() {
+        return scope;
+    }
+
+    @Override
+    public int propagate(Assignment assignment, Domain domains) {
+        if(!isChanged(domains)){
+            return 0;
+        }
+
+        int removed = 0;
+        int passRemoved;
+        do{
+            passRemoved = revise(domains);
+            if(passRemoved < 0){
+                return -1;
+            }
+
+            removed += passRemoved;
+        } while(passRemoved > 0);
+
+        for(int i = 0; i < scope.length; ++i){
+            int size = domains.size(scope[i]);
+            if(lastSizes[i] != size){
+                trail.save(lastSizes, i);
+                lastSizes[i] = size;
+            }
+        }
+
+        return removed;
+    }
+
+    private int revise(Domain domains){
+        long tupleCount = 1;
+        for(int var : scope){
+            if(domains.size(var) == 0){
+                return -1;
+            }
+            tupleCount *= domains.size(var);
+        }
+
+        int removed = 0;
+        for(int i = 0; i < scope.length; ++i){
+            int var = scope[i];
+            int size = domains.size(var);
+            if(tupleCount / size > MAX_TUPLES){
+                continue;
+            }
+
+            for(int value = domains.first(var); value >= 0; value = domains.next(var, value + 1)){
+                if(!isSupported(i, value, domains)){
+                    domains.remove(var, value);
+                    removed++;
+                }
+            }
+
+            if(domains.size(var) == 0){
+                return -1;
+            }
+
+            tupleCount = tupleCount / size * domains.size(var);
+        }
+
+        return removed;
+    }
+
+    private boolean isValid(int[] tuple, Domain domains){
+        for(int i = 0; i < scope.length; ++i){
+            if(!domains.contains(scope[i], tuple[i])){
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private boolean isSupported(int position, int value, Domain domains){
+        int[] residue = residues[position][value];
+        if(residue != null && isValid(residue, domains)){
+            return true;
+        }
+
+        for(int i = 0; i < scope.length; ++i){
+            tuple[i] = i == position ? value : domains.first(scope[i]);
+            tupleAssignment.set(scope[i], csp.getValue(scope[i], tuple[i]));
+        }
+
+        while(true){
+            if(constraint.evaluate(tupleAssignment)){
+                int[] support = tuple.clone();
+                for(int i = 0; i < scope.length; ++i){
+                    residues[i][support[i]] = support;
+                }
+                return true;
+            }
+
+            // Next tuple in the lexicographic order of the value ids, the position stays fixed
+            int i = scope.length - 1;
+            for(; i >= 0; --i){
+                if(i == position){
+                    continue;
+                }
+
+                int next = domains.next(scope[i], tuple[i] + 1);
+                tuple[i] = next >= 0 ? next : domains.first(scope[i]);
+                tupleAssignment.set(scope[i], csp.getValue(scope[i], tuple[i]));
+                if(next >= 0){
+                    break;
+                }
+            }
+
+            if(i < 0){
+                return false;
+            }
+        }
+    }
+}
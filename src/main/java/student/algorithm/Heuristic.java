@@ -1,30 +1,23 @@
 package student.algorithm;
 
-import student.Assignment;
-import student.CSP;
+import student.CompiledCSP;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Set;
+import java.util.Random;
 
 public abstract class Heuristic {
-    protected final CSP csp;
-    protected final List<String> variables;
+    protected final CompiledCSP csp;
+    protected final int variableCount;
 
-    public Heuristic(CSP csp){
+    public Heuristic(CompiledCSP csp){
         this.csp = csp;
-        this.variables = csp.getVariables();
+        this.variableCount = csp.getVariableCount();
     }
 
-    protected List<String> getUnassignedVariables(Assignment assignment){
-        Set<String> assignedVariables = assignment.getAssignedVariables();
-        List<String> unassigned = new ArrayList<>();
-        for(String var : variables){
-            if(!assignedVariables.contains(var)){
-                unassigned.add(var);
-            }
-        }
-
-        return unassigned;
+    /***
+     * Whether the candidate replaces the selected variable on a tie, ties is the number of tied variables
+     * seen so far including the candidate. With random each of them is kept with the same probability.
+     */
+    static boolean winsTie(Random random, int ties, int candidate, int selected){
+        return random == null ? candidate < selected : random.nextInt(ties) == 0;
     }
 }
@@ -1,64 +1,92 @@
 package student.algorithm;
 
 import student.Assignment;
-import student.CSP;
+import student.CompiledCSP;
 import student.Domain;
 
-import java.util.LinkedList;
-import java.util.List;
 import java.util.PriorityQueue;
-import java.util.Set;
+import java.util.Random;
 
 public class LeastConstrainingValueHeuristic extends Heuristic implements ValueOrderHeuristic {
     private ForwardChecking forwardChecking;
+    // Shuffles the values with the same priority when set
+    private final Random random;
 
-    public LeastConstrainingValueHeuristic(CSP csp, ForwardChecking forwardChecking){
+    public LeastConstrainingValueHeuristic(CompiledCSP csp, ForwardChecking forwardChecking){
+        this(csp, forwardChecking, null);
+    }
+
+    public LeastConstrainingValueHeuristic(CompiledCSP csp, ForwardChecking forwardChecking, Random random){
         super(csp);
         this.forwardChecking = forwardChecking;
+        this.random = random;
+    }
+
+    @Override
+    public int[] orderValues(int variable, Domain domains, Assignment assignment) {
+        return orderValues(variable, domains, assignment, null);
     }
 
+    /***
+     * The values that wipe out a domain of a neighbour are left out, the forward checking result of the others
+     * is stored in pruned so the solver does not run it again
+     */
     @Override
-    public List<Object> orderValues(String variable, Domain domains, Assignment assignment) {
-        class PrioritizedValue implements Comparable{
-            public PrioritizedValue(int priority, Object value){
+    public int[] orderValues(int variable, Domain domains, Assignment assignment, PrunedDomains[] pruned) {
+        class PrioritizedValue implements Comparable<PrioritizedValue>{
+            public PrioritizedValue(int priority, int value, PrunedDomains prunedDomains){
                 this.priority = priority;
                 this.value = value;
+                this.tieBreak = random == null ? value : random.nextInt();
+                this.prunedDomains = prunedDomains;
             }
-            public Integer priority;
-            public Object value;
+            public int priority;
+            public int value;
+            public int tieBreak;
+            public PrunedDomains prunedDomains;
 
             @Override
-            public int compareTo(Object o) {
-                return this.priority.compareTo(((PrioritizedValue)o).priority);
+            public int compareTo(PrioritizedValue o) {
+                return this.priority != o.priority ?
+                        Integer.compare(this.priority, o.priority) : Integer.compare(this.tieBreak, o.tieBreak);
             }
         }
 
 
-        Set<Object> domain = domains.get(variable);
-        if(domain.size() == 1){
-            return new LinkedList<>(domain);
+        if(domains.size(variable) == 1){
+            return domains.values(variable);
         }
 
         PriorityQueue<PrioritizedValue> priorityQueue = new PriorityQueue<>();
-        List<String> unassigned = getUnassignedVariables(assignment);
-        unassigned.remove(variable);
 
         // Most constrained value
-        for(Object value : domain){
-            assignment = assignment.set(variable, value);
+        int mark = domains.mark();
+        for(int value = domains.first(variable); value >= 0; value = domains.next(variable, value + 1)){
+            assignment = assignment.set(variable, csp.getValue(variable, value));
 
-            Domain newDomains = domains.inherit();
-            Integer res = forwardChecking.execute(assignment, variable, newDomains, unassigned);
-            if(res >= 0){
-                priorityQueue.add(new PrioritizedValue(res, value));
+            if(pruned == null){
+                int res = forwardChecking.probe(assignment, variable, value, domains);
+                if(res >= 0){
+                    priorityQueue.add(new PrioritizedValue(res, value, null));
+                }
+            } else {
+                PrunedDomains prunedDomains = forwardChecking.record(assignment, variable, value, domains);
+                if(prunedDomains != null){
+                    priorityQueue.add(new PrioritizedValue(prunedDomains.getRemovedCount(), value, prunedDomains));
+                }
             }
 
+            domains.restore(mark);
             assignment = assignment.reset(variable);
         }
 
-        List<Object> orderedValues = new LinkedList<>();
-        while(!priorityQueue.isEmpty()){
-            orderedValues.add(priorityQueue.poll().value);
+        int[] orderedValues = new int[priorityQueue.size()];
+        for(int i = 0; i < orderedValues.length; ++i){
+            PrioritizedValue prioritizedValue = priorityQueue.poll();
+            orderedValues[i] = prioritizedValue.value;
+            if(pruned != null){
+                pruned[i] = prioritizedValue.prunedDomains;
+            }
         }
         return orderedValues;
     }
@@ -0,0 +1,224 @@
+package student.algorithm;
+
+import student.Assignment;
+import student.CompiledCSP;
+import student.Domain;
+import student.Trail;
+import student.constraints.LineConstraint;
+
+import java.util.Arrays;
+import java.util.List;
+
+/***
+ * Propagator of LineConstraint, keeps every cell value that appears in some placement of the blocks.
+ * A dynamic program over the cells and the blocks finds the prefixes of the line that can hold the first blocks
+ * and the suffixes that can hold the remaining ones, with a flag telling whether a block ends right before the cell
+ * (the next block of the same colour then cannot start there). A block position is valid when its prefix and suffix
+ * are, every cell it covers supports the colour of the block. One propagation costs O(cells x blocks).
+ * Nothing is done while the domain sizes of the cells stay the same as after the last propagation.
+ */
+public class LinePropagator implements Propagator {
+    private final Trail trail;
+    private final LineConstraint constraint;
+    private final int[] scope;
+    private final int blockCount;
+    private final int[] lengths;
+    // Value id of the blank and of the colour of each block in the domain of each cell, -1 if it is not there
+    private final int[] blankIds;
+    private final int[][] colorIds;
+    private final int[] lastSizes;
+
+    private final boolean[] canBlank;
+    // Number of cells before the position that cannot take the colour of the block
+    private final int[][] blocked;
+    private final boolean[][] prefixes;
+    private final boolean[][] prefixesAfterBlock;
+    private final boolean[][] suffixes;
+    private final boolean[][] suffixesAfterBlock;
+    private final int[][] coverage;
+    private final long[][] supported;
+
+    public LinePropagator(CompiledCSP csp, LineConstraint constraint, Trail trail){
+        this.trail = trail;
+        this.constraint = constraint;
+        List<String> cells = constraint.getCells();
+        int length = cells.size();
+        this.scope = new int[length];
+        this.blockCount = constraint.getBlockCount();
+        this.lengths = new int[blockCount];
+        this.blankIds = new int[length];
+        this.colorIds = new int[blockCount][length];
+        this.supported = new long[length][];
+        for(int i = 0; i < length; ++i){
+            scope[i] = csp.getVariableIndex().getId(cells.get(i));
+            blankIds[i] = csp.getValueId(scope[i], constraint.getBlank());
+            supported[i] = new long[(csp.getValueCount(scope[i]) + 63) >>> 6];
+        }
+
+        for(int j = 0; j < blockCount; ++j){
+            lengths[j] = constraint.getLength(j);
+            for(int i = 0; i < length; ++i){
+                colorIds[j][i] = csp.getValueId(scope[i], constraint.getColor(j));
+            }
+        }
+
+        this.lastSizes = new int[length];
+        Arrays.fill(this.lastSizes, -1);
+        this.canBlank = new boolean[length];
+        this.blocked = new int[blockCount][length + 1];
+        this.prefixes = new boolean[blockCount + 1][length + 1];
+        this.prefixesAfterBlock = new boolean[blockCount + 1][length + 1];
+        this.suffixes = new boolean[blockCount + 1][length + 2];
+        this.suffixesAfterBlock = new boolean[blockCount + 1][length + 2];
+        this.coverage = new int[blockCount][length + 1];
+    }
+
+    @Override
+    public int[] getScope() {
+        return scope;
+    }
+
+    private boolean isChanged(Domain domains){
+        for(int i = 0; i < scope.length; ++i){
+            if(domains.size(scope[i]) != lastSizes[i]){
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private boolean fits(int block, int start){
+        int end = start + lengths[block];
+        return end <= scope.length && blocked[block][end] == blocked[block][start];
+    }
+
+    /***
+     * Whether block j can start right after the end of block j - 1
+     */
+    private boolean canTouch(int block){
+        return block == 0 || !constraint.needsGap(block - 1);
+    }
+
+    private void prepare(Domain domains){
+        int length = scope.length;
+        for(int i = 0; i < length; ++i){
+            canBlank[i] = blankIds[i] >= 0 && domains.contains(scope[i], blankIds[i]);
+        }
+
+        for(int j = 0; j < blockCount; ++j){
+            for(int i = 0; i < length; ++i){
+                boolean canColor = colorIds[j][i] >= 0 && domains.contains(scope[i], colorIds[j][i]);
+                blocked[j][i + 1] = blocked[j][i] + (canColor ? 0 : 1);
+            }
+        }
+    }
+
+    private void computeSuffixes(){
+        int length = scope.length;
+        for(int j = 0; j <= blockCount; ++j){
+            suffixes[j][length] = j == blockCount;
+            suffixesAfterBlock[j][length] = j == blockCount;
+        }
+
+        for(int i = length - 1; i >= 0; --i){
+            for(int j = blockCount; j >= 0; --j){
+                boolean blank = canBlank[i] && suffixes[j][i + 1];
+                boolean block = j < blockCount && fits(j, i) && suffixesAfterBlock[j + 1][i + lengths[j]];
+                suffixes[j][i] = blank || block;
+                suffixesAfterBlock[j][i] = blank || (block && canTouch(j));
+            }
+        }
+    }
+
+    private void computePrefixes(){
+        int length = scope.length;
+        for(boolean[] row : prefixes){
+            Arrays.fill(row, false);
+        }
+        for(boolean[] row : prefixesAfterBlock){
+            Arrays.fill(row, false);
+        }
+
+        prefixes[0][0] = true;
+        for(int i = 0; i <= length; ++i){
+            for(int j = 0; j <= blockCount; ++j){
+                if(!prefixes[j][i] && !prefixesAfterBlock[j][i]){
+                    continue;
+                }
+
+                if(i < length && canBlank[i]){
+                    prefixes[j][i + 1] = true;
+                }
+
+                if(j < blockCount && fits(j, i) && (prefixes[j][i] || canTouch(j))){
+                    prefixesAfterBlock[j + 1][i + lengths[j]] = true;
+                }
+            }
+        }
+    }
+
+    @Override
+    public int propagate(Assignment assignment, Domain domains) {
+        if(!isChanged(domains)){
+            return 0;
+        }
+
+        prepare(domains);
+        computeSuffixes();
+        if(!suffixes[0][0]){
+            return -1;
+        }
+
+        computePrefixes();
+        int length = scope.length;
+        for(long[] words : supported){
+            Arrays.fill(words, 0L);
+        }
+
+        for(int i = 0; i < length; ++i){
+            for(int j = 0; j <= blockCount && canBlank[i]; ++j){
+                if((prefixes[j][i] || prefixesAfterBlock[j][i]) && suffixes[j][i + 1]){
+                    supported[i][blankIds[i] >>> 6] |= 1L << blankIds[i];
+                    break;
+                }
+            }
+        }
+
+        for(int j = 0; j < blockCount; ++j){
+            int[] cover = coverage[j];
+            Arrays.fill(cover, 0);
+            for(int start = 0; start + lengths[j] <= length; ++start){
+                if((prefixes[j][start] || (prefixesAfterBlock[j][start] && canTouch(j)))
+                        && fits(j, start) && suffixesAfterBlock[j + 1][start + lengths[j]]){
+                    cover[start]++;
+                    cover[start + lengths[j]]--;
+                }
+            }
+
+            int covered = 0;
+            for(int i = 0; i < length; ++i){
+                covered += cover[i];
+                if(covered > 0){
+                    supported[i][colorIds[j][i] >>> 6] |= 1L << colorIds[j][i];
+                }
+            }
+        }
+
+        int removed = 0;
+        for(int i = 0; i < length; ++i){
+            removed += domains.retain(scope[i], supported[i]);
+            int size = domains.size(scope[i]);
+            if(size == 0){
+                return -1;
+            }
+
+            if(lastSizes[i] != size){
+                trail.save(lastSizes, i);
+                lastSizes[i] = size;
+            }
+        }
+
+        return removed;
+    }
+}
@@ -0,0 +1,190 @@
+package student.algorithm;
+
+import student.Assignment;
+import student.CompiledCSP;
+import student.Domain;
+import student.Trail;
+import student.constraints.LinearConstraint;
+
+import java.util.Arrays;
+
+/***
+ * Bounds consistency for LinearConstraint.
+ * The constraint is kept as rows sum(coefficients * variables) <= bound (an equality gives two rows),
+ * each row tightens the bound of every variable by the minimal contribution of the others.
+ * Works on the minimal and maximal value of the domains only, the values of integer variables
+ * are sorted so the value ids follow the value order.
+ * Nothing is done while the domain sizes of the scope stay the same as after the last propagation.
+ */
+public class LinearBounds implements Propagator {
+    private final Trail trail;
+    private final int[] scope;
+    private final int[][] values;
+    private final int[][] rows;
+    private final long[] bounds;
+    private final long[] minimums;
+    private final int[] lastSizes;
+
+    public LinearBounds(CompiledCSP csp, LinearConstraint constraint, Trail trail){
+        this.trail = trail;
+        this.scope = new int[constraint.getArity()];
+        this.values = new int[scope.length][];
+        int[] coefficients = new int[scope.length];
+        for(int i = 0; i < scope.length; ++i){
+            scope[i] = csp.getVariableIndex().getId(constraint.getVariable(i));
+            coefficients[i] = constraint.getCoefficient(i);
+            values[i] = new int[csp.getValueCount(scope[i])];
+            for(int value = 0; value < values[i].length; ++value){
+                values[i][value] = (Integer)csp.getValue(scope[i], value);
+            }
+        }
+
+        int[] negated = new int[scope.length];
+        for(int i = 0; i < scope.length; ++i){
+            negated[i] = -coefficients[i];
+        }
+
+        switch (constraint.getRelation()){
+            case LESS_EQUAL:
+                rows = new int[][]{coefficients};
+                bounds = new long[]{constraint.getBound()};
+                break;
+            case GREATER_EQUAL:
+                rows = new int[][]{negated};
+                bounds = new long[]{-(long)constraint.getBound()};
+                break;
+            default:
+                rows = new int[][]{coefficients, negated};
+                bounds = new long[]{constraint.getBound(), -(long)constraint.getBound()};
+        }
+
+        this.minimums = new long[scope.length];
+        this.lastSizes = new int[scope.length];
+        Arrays.fill(lastSizes, -1);
+    }
+
+    private boolean isChanged(Domain domains){
+        for(int i = 0; i < scope.length; ++i){
+            if(domains.size(scope[i]) != lastSizes[i]){
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /***
+     * Returns true if all variables of the constraint have integer values
+     */
+    public static boolean isApplicable(CompiledCSP csp, LinearConstraint constraint){
+        for(int i = 0; i < constraint.getArity(); ++i){
+            String var = constraint.getVariable(i);
+            if(!csp.getVariableIndex().contains(var) || csp.getValueType(csp.getVariableIndex().getId(var)) != Integer.class){
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    @Override
+    public int[] getScope() {
+        return scope;
+    }
+
+    @Override
+    public int propagate(Assignment assignment, Domain domains) {
+        if(!isChanged(domains)){
+            return 0;
+        }
+
+        int removed = 0;
+        boolean changed = true;
+        while(changed){
+            changed = false;
+            for(int row = 0; row < rows.length; ++row){
+                int result = propagateRow(rows[row], bounds[row], domains);
+                if(result < 0){
+                    return -1;
+                }
+
+                changed |= result > 0;
+                removed += result;
+            }
+        }
+
+        for(int i = 0; i < scope.length; ++i){
+            int size = domains.size(scope[i]);
+            if(lastSizes[i] != size){
+                trail.save(lastSizes, i);
+                lastSizes[i] = size;
+            }
+        }
+
+        return removed;
+    }
+
+    private int propagateRow(int[] coefficients, long bound, Domain domains){
+        long minimum = 0;
+        for(int i = 0; i < scope.length; ++i){
+            int id = coefficients[i] > 0 ? domains.first(scope[i]) : domains.last(scope[i]);
+            if(id < 0){
+                return -1;
+            }
+
+            minimums[i] = (long)coefficients[i] * values[i][id];
+            minimum += minimums[i];
+        }
+
+        if(minimum > bound){
+            return -1;
+        }
+
+        int removed = 0;
+        for(int i = 0; i < scope.length; ++i){
+            // coefficient * x <= slack
+            long slack = bound - (minimum - minimums[i]);
+            if(coefficients[i] > 0){
+                long max = Math.floorDiv(slack, coefficients[i]);
+                removed += domains.removeAbove(scope[i], floorIndex(values[i], max));
+            } else if(coefficients[i] < 0){
+                long min = -Math.floorDiv(slack, -coefficients[i]);
+                removed += domains.removeBelow(scope[i], ceilIndex(values[i], min));
+            }
+
+            if(domains.size(scope[i]) == 0){
+                return -1;
+            }
+        }
+
+        return removed;
+    }
+
+    /***
+     * Returns the index of the largest value smaller or equal to the bound, -1 if there is none
+     */
+    private static int floorIndex(int[] values, long bound){
+        if(bound >= Integer.MAX_VALUE){
+            return values.length - 1;
+        } else if(bound < Integer.MIN_VALUE){
+            return -1;
+        }
+
+        int index = Arrays.binarySearch(values, (int)bound);
+        return index >= 0 ? index : -index - 2;
+    }
+
+    /***
+     * Returns the index of the smallest value greater or equal to the bound, values.length if there is none
+     */
+    private static int ceilIndex(int[] values, long bound){
+        if(bound <= Integer.MIN_VALUE){
+            return 0;
+        } else if(bound > Integer.MAX_VALUE){
+            return values.length;
+        }
+
+        int index = Arrays.binarySearch(values, (int)bound);
+        return index >= 0 ? index : -index - 1;
+    }
+}
@@ -1,34 +1,55 @@
 package student.algorithm;
 
 import student.Assignment;
-import student.CSP;
 import student.Domain;
+import student.SizeHeap;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Set;
+import java.util.Random;
 
+/***
+ * Selects the unassigned variable with the smallest domain, a tie goes to the lowest id.
+ * The domains keep the variables in a heap by their sizes (see SizeHeap), the selection takes its top.
+ * Domains without the heap are scanned.
+ */
 public class MostConstrainedVariableHeuristic implements VariableOrderHeuristic {
-    private final List<String> variables;
+    // Breaks the ties uniformly at random when set
+    private final Random random;
 
-    public MostConstrainedVariableHeuristic(CSP csp) {
-        this.variables = csp.getVariables();
+    public MostConstrainedVariableHeuristic() {
+        this(null);
     }
 
-    public String selectVariable(Assignment assignment, Domain domains) {
-        // Most constrained value
-        Set<String> assignedVariables = assignment.getAssignedVariables();
-        List<String> allVariables = new ArrayList<>(this.variables);
-        allVariables.removeAll(assignedVariables);
+    public MostConstrainedVariableHeuristic(Random random) {
+        this.random = random;
+    }
+
+    @Override
+    public void prepare(Domain domains) {
+        domains.trackSizes();
+    }
 
-        String selectedVar = null;
-        Integer minimum = null;
-        for (String variable : allVariables) {
-            int domainSize = domains.get(variable).size();
+    public int selectVariable(Assignment assignment, Domain domains) {
+        SizeHeap heap = domains.getSizeHeap();
+        if (heap == null) {
+            return scan(assignment, domains);
+        }
 
-            if (minimum == null || minimum > domainSize) {
+        return random == null ? heap.first() : heap.sample(random);
+    }
+    private int scan(Assignment assignment, Domain domains) {
+        // Most constrained value
+        int selectedVar = -1;
+        int minimum = Integer.MAX_VALUE;
+        int ties = 0;
+        for (int i = 0; i < assignment.getUnassignedCount(); ++i) {
+            int variable = assignment.getUnassignedVariable(i);
+            int domainSize = domains.size(variable);
+            if (selectedVar < 0 || minimum > domainSize) {
                 minimum = domainSize;
                 selectedVar = variable;
+                ties = 1;
+            } else if (minimum == domainSize && Heuristic.winsTie(random, ++ties, variable, selectedVar)) {
+                selectedVar = variable;
             }
         }
 
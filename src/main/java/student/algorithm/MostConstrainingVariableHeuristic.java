@@ -1,57 +1,89 @@
 package student.algorithm;
 import student.Assignment;
-import student.CSP;
+import student.CompiledCSP;
 import student.Domain;
-import student.constraints.Constraint;
+import student.Trail;
 
-import java.util.*;
+import java.util.Arrays;
+import java.util.Random;
 
+/***
+ * Selects the unassigned variable with the most constraints, a tie goes to the lowest id.
+ * The priorities do not change, so the variables are sorted once and a cursor kept on the trail
+ * of the domains skips the assigned ones at the front of the order.
+ */
 public final class MostConstrainingVariableHeuristic extends Heuristic implements VariableOrderHeuristic {
 
     @Override
-    public String selectVariable(Assignment assignment, Domain domains) {
-        // Find maximum
-        Integer maximum = null;
-        String selectedVar = null;
-        for(String var : this.getUnassignedVariables(assignment)){
-            Integer priority = this.variables.get(var);
-            if(maximum == null || maximum < priority){
-                maximum = priority;
-                selectedVar = var;
+    public int selectVariable(Assignment assignment, Domain domains) {
+        int position = cursor == null ? 0 : cursor[0];
+        while(position < order.length && assignment.isAssigned(order[position])){
+            position++;
+        }
+
+        if(cursor != null && cursor[0] != position){
+            trail.save(cursor, 0);
+            cursor[0] = position;
+        }
+
+        if(position == order.length){
+            return -1;
+        }
+
+        int selectedVar = order[position];
+        int ties = 1;
+        for(int i = position + 1; random != null && i < groupEnds[position]; ++i){
+            if(!assignment.isAssigned(order[i]) && winsTie(random, ++ties, order[i], selectedVar)){
+                selectedVar = order[i];
             }
         }
 
         return selectedVar;
     }
 
-    private class ValueWithPriority implements Comparable{
-        public ValueWithPriority(String variable, Integer priority){
-            this.priority = priority;
-            this.variable = variable;
-        }
+    @Override
+    public void prepare(Domain domains) {
+        trail = domains.getTrail();
+        cursor = new int[1];
+    }
 
-        public String variable;
-        public Integer priority;
+    // Variables by descending priority and then by id
+    private final int[] order;
+    // End of the group of equal priorities that contains the position
+    private final int[] groupEnds;
+    private final Random random;
+    private Trail trail;
+    // Position in order before which all variables are assigned, null if the heuristic was not prepared
+    private int[] cursor;
 
-        @Override
-        public int compareTo(Object o) {
-            return -this.priority.compareTo(((ValueWithPriority)o).priority);
-        }
+    public MostConstrainingVariableHeuristic(CompiledCSP csp) {
+        this(csp, null);
     }
 
-    private Map<String, Integer> variables;
-
-    public MostConstrainingVariableHeuristic(CSP csp) {
+    public MostConstrainingVariableHeuristic(CompiledCSP csp, Random random) {
         super(csp);
-        variables = new HashMap<>();
-        for(String var : csp.getVariables()){
-            variables.put(var, 0);
+        this.random = random;
+        int[] priorities = new int[csp.getVariableCount()];
+        for(int constr = 0; constr < csp.getConstraintCount(); ++constr){
+            for(int var : csp.getScope(constr)){
+                priorities[var]++;
+            }
         }
 
-        for(Constraint constr: csp.getConstraints()){
-            for(String var : constr.getScope()){
-                variables.compute(var, (str, old) -> old + 1);
-            }
+        Integer[] sorted = new Integer[variableCount];
+        for(int var = 0; var < variableCount; ++var){
+            sorted[var] = var;
+        }
+        Arrays.sort(sorted, (a, b) -> priorities[a] != priorities[b]
+                ? Integer.compare(priorities[b], priorities[a])
+                : Integer.compare(a, b));
+
+        order = new int[variableCount];
+        groupEnds = new int[variableCount];
+        for(int i = variableCount - 1; i >= 0; --i){
+            order[i] = sorted[i];
+            boolean isLast = i == variableCount - 1 || priorities[sorted[i]] != priorities[sorted[i + 1]];
+            groupEnds[i] = isLast ? i + 1 : groupEnds[i + 1];
         }
     }
 }
@@ -0,0 +1,211 @@
+package student.algorithm;
+
+import student.Assignment;
+import student.Domain;
+import student.Trail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/***
+ * Nogoods recorded by the restarts: conjunctions of decisions variable = value that have no solution.
+ * A decision holds when the domain of its variable is reduced to the value. When all decisions
+ * of a nogood but one hold, the value of the remaining one is removed.
+ * Each nogood watches two decisions that do not hold, it is only visited when the domain of the variable
+ * of a watched decision is reduced to its value. It then watches another decision that does not hold
+ * or, if there is none, removes the value of the other watched one. Backtracking only undoes decisions,
+ * so the watches stay valid and are not kept on the trail. New nogoods choose their watches in the next
+ * propagation, the restarts add them at the root.
+ */
+public class NogoodStore implements Propagator {
+    private final Trail trail;
+    private final List<int[]> variables = new ArrayList<>();
+    private final List<int[]> values = new ArrayList<>();
+    // Positions of the two watched decisions of each nogood, equal if only one decision does not hold
+    private int[][] watched = new int[16][];
+    // Nogoods by the decision they watch
+    private final Map<Long, WatchList> watches = new HashMap<>();
+    // Number of nogoods that chose their watches
+    private int watchedCount;
+    // Domain sizes seen by the last propagation, kept on the trail
+    private final int[] lastSizes;
+    private final int[] changed;
+
+    public NogoodStore(int variableCount, Trail trail){
+        this.trail = trail;
+        this.lastSizes = new int[variableCount];
+        this.changed = new int[variableCount];
+        Arrays.fill(this.lastSizes, -1);
+    }
+
+    public void add(int[] variables, int[] values){
+        this.variables.add(variables);
+        this.values.add(values);
+    }
+
+    public int size(){
+        return variables.size();
+    }
+
+    private static boolean holds(Domain domains, int variable, int value){
+        return domains.size(variable) == 1 && domains.contains(variable, value);
+    }
+
+    private static long getKey(int variable, int value){
+        return ((long)variable << 32) | value;
+    }
+
+    private void watch(int nogood, int position){
+        long key = getKey(variables.get(nogood)[position], values.get(nogood)[position]);
+        watches.computeIfAbsent(key, k -> new WatchList()).add(nogood);
+    }
+
+    @Override
+    public int propagate(Assignment assignment, Domain domains) {
+        int removed = 0;
+        int count = 0;
+        for(; watchedCount < variables.size(); ++watchedCount){
+            int result = initialize(watchedCount, domains);
+            if(result < 0){
+                return -1;
+            }
+            removed += result;
+        }
+
+        for(int var = 0; var < lastSizes.length; ++var){
+            if(domains.size(var) != lastSizes[var]){
+                trail.save(lastSizes, var);
+                lastSizes[var] = domains.size(var);
+                if(lastSizes[var] == 1){
+                    changed[count++] = var;
+                }
+            }
+        }
+
+        while(count > 0){
+            int var = changed[--count];
+            WatchList list = watches.get(getKey(var, domains.first(var)));
+            for(int i = 0; list != null && i < list.size;){
+                int nogood = list.nogoods[i];
+                int result = update(nogood, var, domains);
+                if(result == MOVED){
+                    list.nogoods[i] = list.nogoods[--list.size];
+                    continue;
+                } else if(result == CONFLICT){
+                    return -1;
+                }
+
+                i++;
+                if(result != NONE){
+                    removed++;
+                    int other = variables.get(nogood)[result];
+                    if(domains.size(other) == 1){
+                        trail.save(lastSizes, other);
+                        lastSizes[other] = 1;
+                        changed[count++] = other;
+                    }
+                }
+            }
+        }
+
+        return removed;
+    }
+
+    // Results of update besides the position of the decision whose value was removed
+    private static final int CONFLICT = -1;
+    private static final int MOVED = -2;
+    private static final int NONE = -3;
+
+    /***
+     * Chooses the watches of a new nogood, returns the number of removed values or -1 if all its decisions hold
+     */
+    private int initialize(int nogood, Domain domains){
+        int[] vars = variables.get(nogood);
+        int[] vals = values.get(nogood);
+        if(nogood == watched.length){
+            watched = Arrays.copyOf(watched, watched.length * 2);
+        }
+
+        int first = -1;
+        int second = -1;
+        for(int j = 0; j < vars.length && second < 0; ++j){
+            if(!holds(domains, vars[j], vals[j])){
+                if(first < 0){
+                    first = j;
+                } else {
+                    second = j;
+                }
+            }
+        }
+
+        if(first < 0){
+            domains.explainBy(vars);
+            return -1;
+        }
+
+        watched[nogood] = new int[]{ first, second < 0 ? first : second };
+        watch(nogood, first);
+        if(second >= 0){
+            watch(nogood, second);
+            return 0;
+        }
+
+        return remove(nogood, first, domains);
+    }
+
+    /***
+     * Updates the nogood after the watched decision on the variable started to hold.
+     * Returns MOVED if it watches another decision now, the position of the decision whose value
+     * it removed, NONE if it did nothing or CONFLICT if all its decisions hold.
+     */
+    private int update(int nogood, int variable, Domain domains){
+        int[] vars = variables.get(nogood);
+        int[] vals = values.get(nogood);
+        int[] watch = watched[nogood];
+        int slot = vars[watch[0]] == variable ? 0 : 1;
+        int other = watch[1 - slot];
+        for(int j = 0; j < vars.length; ++j){
+            if(j != watch[0] && j != watch[1] && !holds(domains, vars[j], vals[j])){
+                watch[slot] = j;
+                watch(nogood, j);
+                return MOVED;
+            }
+        }
+
+        if(other == watch[slot] || holds(domains, vars[other], vals[other])){
+            domains.explainBy(vars);
+            return CONFLICT;
+        } else if(!domains.contains(vars[other], vals[other])){
+            // The other decision cannot hold anymore
+            return NONE;
+        }
+
+        return remove(nogood, other, domains) < 0 ? CONFLICT : other;
+    }
+
+    private int remove(int nogood, int position, Domain domains){
+        int[] vars = variables.get(nogood);
+        if(!domains.contains(vars[position], values.get(nogood)[position])){
+            return 0;
+        }
+
+        domains.explainBy(vars);
+        domains.remove(vars[position], values.get(nogood)[position]);
+        return domains.size(vars[position]) == 0 ? -1 : 1;
+    }
+
+    private static class WatchList {
+        private int[] nogoods = new int[4];
+        private int size;
+
+        void add(int nogood){
+            if(size == nogoods.length){
+                nogoods = Arrays.copyOf(nogoods, size * 2);
+            }
+            nogoods[size++] = nogood;
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package student.algorithm;
+
+import student.Assignment;
+import student.Domain;
+
+public interface Propagator {
+    /***
+     * Removes the values that cannot be part of a solution from the domains.
+     * Returns the number of removed values or -1 if a domain of a variable became empty.
+     */
+    int propagate(Assignment assignment, Domain domains);
+
+    /***
+     * Returns the variables whose domains explain the removed values, null if the propagator explains
+     * its removals itself or they are not known (see ConflictSets)
+     */
+    default int[] getScope(){
+        return null;
+    }
+}
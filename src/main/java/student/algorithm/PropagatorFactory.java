@@ -0,0 +1,68 @@
+package student.algorithm;
+
+import student.Assignment;
+import student.CompiledCSP;
+import student.Domain;
+import student.StaticAssignment;
+import student.constraints.CompiledConstraint;
+import student.constraints.Constraint;
+import student.constraints.DifferenceConstraint;
+import student.constraints.LineConstraint;
+import student.constraints.LinearConstraint;
+import student.constraints.RegularConstraint;
+import student.constraints.TableConstraint;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/***
+ * Creates the specialized propagators for the constraints that have one.
+ * The other constraints with more than two variables get the generic GAC propagator,
+ * the binary ones are handled by forward checking and AC3.
+ */
+public class PropagatorFactory {
+    private final CompiledCSP csp;
+
+    public PropagatorFactory(CompiledCSP csp){
+        this.csp = csp;
+    }
+
+    public Propagator create(Constraint constraint, Domain domains){
+        if(constraint instanceof CompiledConstraint){
+            constraint = ((CompiledConstraint)constraint).getSource();
+        }
+
+        if(constraint instanceof TableConstraint){
+            return new CompactTable(csp, (TableConstraint)constraint, domains.getTrail());
+        } else if(constraint instanceof LineConstraint){
+            return new LinePropagator(csp, (LineConstraint)constraint, domains.getTrail());
+        } else if(constraint instanceof RegularConstraint){
+            return new RegularPropagator(csp, (RegularConstraint)constraint, domains.getTrail());
+        } else if(constraint instanceof DifferenceConstraint){
+            constraint = ((DifferenceConstraint)constraint).toLinear();
+        }
+
+        if(constraint instanceof LinearConstraint && LinearBounds.isApplicable(csp, (LinearConstraint)constraint)){
+            return new LinearBounds(csp, (LinearConstraint)constraint, domains.getTrail());
+        }
+
+        return null;
+    }
+
+    public List<Propagator> createAll(Domain domains){
+        List<Propagator> propagators = new ArrayList<>();
+        Assignment tupleAssignment = new StaticAssignment(csp.getVariableIndex());
+        for(int constr = 0; constr < csp.getConstraintCount(); ++constr){
+            Propagator propagator = create(csp.getConstraint(constr), domains);
+            if(propagator == null && GeneralizedArcConsistency.isApplicable(csp, constr)){
+                propagator = new GeneralizedArcConsistency(csp, constr, tupleAssignment, domains.getTrail());
+            }
+
+            if(propagator != null){
+                propagators.add(propagator);
+            }
+        }
+
+        return propagators;
+    }
+}
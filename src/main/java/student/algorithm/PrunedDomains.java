@@ -0,0 +1,38 @@
+package student.algorithm;
+
+import student.Domain;
+
+/***
+ * Domains of the neighbours of a variable after forward checking of one of its values.
+ * Applying them to the domains the forward checking started from gives the same domains as running it again.
+ */
+public final class PrunedDomains {
+    private final int variable;
+    private final int removedCount;
+    private final int[] variables;
+    private final long[][] values;
+
+    PrunedDomains(int variable, int removedCount, int[] variables, long[][] values){
+        this.variable = variable;
+        this.removedCount = removedCount;
+        this.variables = variables;
+        this.values = values;
+    }
+
+    public int getRemovedCount(){
+        return removedCount;
+    }
+
+    /***
+     * Retains the recorded values in the domains, returns the number of removed values
+     */
+    public int apply(Domain domains){
+        domains.explainBy(variable);
+        int removed = 0;
+        for(int i = 0; i < variables.length; ++i){
+            removed += domains.retain(variables[i], values[i]);
+        }
+
+        return removed;
+    }
+}
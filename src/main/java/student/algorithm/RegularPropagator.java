@@ -0,0 +1,153 @@
+package student.algorithm;
+
+import student.Assignment;
+import student.CompiledCSP;
+import student.Domain;
+import student.Trail;
+import student.constraints.RegularConstraint;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/***
+ * Propagator of RegularConstraint achieving GAC on the layered graph (MDD) of the automaton unrolled over the variables.
+ * Layer i holds the states the automaton can be in before reading variable i. A forward pass marks the states
+ * reachable from the start, a backward pass the states leading to an accepting one, a value is kept when some edge
+ * labelled by it joins two such states. One propagation costs O(variables x transitions),
+ * the graph is never stored, only the automaton and one row of flags per layer.
+ * Nothing is done while the domain sizes of the variables stay the same as after the last propagation.
+ */
+public class RegularPropagator implements Propagator {
+    private final Trail trail;
+    private final RegularConstraint constraint;
+    private final int[] scope;
+    // The transitions of the automaton as edges, valueIds[i][e] is the id of the label of e for variable i
+    private final int[] sources;
+    private final int[] targets;
+    private final int[][] valueIds;
+    private final int[] lastSizes;
+
+    private final boolean[][] reachable;
+    private final boolean[][] accepted;
+    private final long[][] supported;
+
+    public RegularPropagator(CompiledCSP csp, RegularConstraint constraint, Trail trail){
+        this.trail = trail;
+        this.constraint = constraint;
+        List<String> variables = constraint.getVariables();
+        int states = constraint.getStateCount();
+        int edges = 0;
+        for(int state = 0; state < states; ++state){
+            edges += constraint.getTransitions(state).size();
+        }
+
+        this.scope = new int[variables.size()];
+        this.sources = new int[edges];
+        this.targets = new int[edges];
+        Object[] labels = new Object[edges];
+        for(int state = 0, e = 0; state < states; ++state){
+            for(Map.Entry<Object, Integer> transition : constraint.getTransitions(state).entrySet()){
+                sources[e] = state;
+                targets[e] = transition.getValue();
+                labels[e++] = transition.getKey();
+            }
+        }
+
+        this.valueIds = new int[scope.length][edges];
+        this.supported = new long[scope.length][];
+        for(int i = 0; i < scope.length; ++i){
+            scope[i] = csp.getVariableIndex().getId(variables.get(i));
+            supported[i] = new long[(csp.getValueCount(scope[i]) + 63) >>> 6];
+            for(int e = 0; e < edges; ++e){
+                valueIds[i][e] = csp.getValueId(scope[i], labels[e]);
+            }
+        }
+
+        this.lastSizes = new int[scope.length];
+        Arrays.fill(this.lastSizes, -1);
+        this.reachable = new boolean[scope.length + 1][states];
+        this.accepted = new boolean[scope.length + 1][states];
+    }
+
+    @Override
+    public int[] getScope() {
+        return scope;
+    }
+
+    private boolean isChanged(Domain domains){
+        for(int i = 0; i < scope.length; ++i){
+            if(domains.size(scope[i]) != lastSizes[i]){
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private boolean isOpen(Domain domains, int i, int edge){
+        int value = valueIds[i][edge];
+        return value >= 0 && domains.contains(scope[i], value);
+    }
+
+    @Override
+    public int propagate(Assignment assignment, Domain domains) {
+        if(!isChanged(domains)){
+            return 0;
+        }
+
+        int length = scope.length;
+        for(boolean[] layer : reachable){
+            Arrays.fill(layer, false);
+        }
+        for(boolean[] layer : accepted){
+            Arrays.fill(layer, false);
+        }
+
+        reachable[0][constraint.getStart()] = true;
+        for(int i = 0; i < length; ++i){
+            for(int e = 0; e < sources.length; ++e){
+                if(reachable[i][sources[e]] && isOpen(domains, i, e)){
+                    reachable[i + 1][targets[e]] = true;
+                }
+            }
+        }
+
+        boolean any = false;
+        for(int state = 0; state < constraint.getStateCount(); ++state){
+            accepted[length][state] = reachable[length][state] && constraint.isAccepting(state);
+            any |= accepted[length][state];
+        }
+
+        if(!any){
+            return -1;
+        }
+
+        for(int i = length - 1; i >= 0; --i){
+            long[] words = supported[i];
+            Arrays.fill(words, 0L);
+            for(int e = 0; e < sources.length; ++e){
+                if(reachable[i][sources[e]] && accepted[i + 1][targets[e]] && isOpen(domains, i, e)){
+                    accepted[i][sources[e]] = true;
+                    words[valueIds[i][e] >>> 6] |= 1L << valueIds[i][e];
+                }
+            }
+        }
+
+        int removed = 0;
+        for(int i = 0; i < length; ++i){
+            removed += domains.retain(scope[i], supported[i]);
+            int size = domains.size(scope[i]);
+            if(size == 0){
+                return -1;
+            }
+
+            if(lastSizes[i] != size){
+                trail.save(lastSizes, i);
+                lastSizes[i] = size;
+            }
+        }
+
+        return removed;
+    }
+}
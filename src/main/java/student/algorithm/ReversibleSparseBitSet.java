@@ -0,0 +1,91 @@
+package student.algorithm;
+
+import student.Trail;
+
+/***
+ * Bitset that can only lose bits, the changes are recorded on the trail.
+ * The indices of the non-zero words are kept in index[0..limit], so the operations
+ * only visit the words that can still have bits set.
+ */
+public final class ReversibleSparseBitSet {
+    private final Trail trail;
+    private final long[] words;
+    private final int[] index;
+    private final int[] limit;
+    private final long[] mask;
+
+    public ReversibleSparseBitSet(Trail trail, int size){
+        int wordCount = (size + 63) >>> 6;
+        this.trail = trail;
+        this.words = new long[wordCount];
+        this.index = new int[wordCount];
+        this.limit = new int[]{ wordCount - 1 };
+        this.mask = new long[wordCount];
+
+        for(int i = 0; i < wordCount; ++i){
+            words[i] = -1L;
+            index[i] = i;
+        }
+
+        if((size & 63) != 0){
+            words[wordCount - 1] = (1L << (size & 63)) - 1;
+        }
+    }
+
+    public static long[] createWords(int size){
+        return new long[(size + 63) >>> 6];
+    }
+
+    public boolean isEmpty(){
+        return limit[0] == -1;
+    }
+
+    public void clearMask(){
+        for(int i = 0; i <= limit[0]; ++i){
+            mask[index[i]] = 0L;
+        }
+    }
+
+    public void addToMask(long[] m){
+        for(int i = 0; i <= limit[0]; ++i){
+            int offset = index[i];
+            mask[offset] |= m[offset];
+        }
+    }
+
+    public void intersectWithMask(){
+        for(int i = limit[0]; i >= 0; --i){
+            int offset = index[i];
+            long word = words[offset] & mask[offset];
+            if(word != words[offset]){
+                trail.save(words, offset);
+                words[offset] = word;
+                if(word == 0L){
+                    // Swap the empty word behind the limit, the set of the indices is restored with the limit
+                    index[i] = index[limit[0]];
+                    index[limit[0]] = offset;
+                    trail.save(limit, 0);
+                    limit[0]--;
+                }
+            }
+        }
+    }
+
+    public boolean intersects(long[] m, int offset){
+        return (words[offset] & m[offset]) != 0L;
+    }
+
+    /***
+     * Returns the offset of a word that has a common bit with m, -1 if there is none
+     */
+    public int intersectIndex(long[] m){
+        for(int i = 0; i <= limit[0]; ++i){
+            int offset = index[i];
+            if((words[offset] & m[offset]) != 0L){
+                return offset;
+            }
+        }
+
+        return -1;
+    }
+}
@@ -3,8 +3,15 @@ package student.algorithm;
 import student.Assignment;
 import student.Domain;
 
-import java.util.List;
-
 public interface ValueOrderHeuristic {
-    List<Object> orderValues(String variable, Domain domains, Assignment assignment);
+    int[] orderValues(int variable, Domain domains, Assignment assignment);
+
+    /***
+     * Orders the values like orderValues, a heuristic that runs forward checking on the values
+     * stores its result for the i-th returned value in pruned[i], the other entries stay null.
+     * The pruned array has at least the size of the domain of the variable.
+     */
+    default int[] orderValues(int variable, Domain domains, Assignment assignment, PrunedDomains[] pruned){
+        return orderValues(variable, domains, assignment);
+    }
 }
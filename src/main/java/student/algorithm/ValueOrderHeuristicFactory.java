@@ -1,19 +1,27 @@
 package student.algorithm;
 import student.Assignment;
-import student.CSP;
+import student.CompiledCSP;
 import student.Domain;
 
 import java.security.InvalidParameterException;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Random;
 
 public class ValueOrderHeuristicFactory {
-    private final CSP csp;
+    private final CompiledCSP csp;
     private ForwardChecking forwardChecking;
+    private final Random random;
 
-    public ValueOrderHeuristicFactory(CSP csp, ForwardChecking forwardChecking){
+    public ValueOrderHeuristicFactory(CompiledCSP csp, ForwardChecking forwardChecking){
+        this(csp, forwardChecking, null);
+    }
+
+    /***
+     * With random the heuristics break the ties at random instead of by the value order
+     */
+    public ValueOrderHeuristicFactory(CompiledCSP csp, ForwardChecking forwardChecking, Random random){
         this.csp = csp;
         this.forwardChecking = forwardChecking;
+        this.random = random;
     }
 
     public ValueOrderHeuristic create(String name){
@@ -21,7 +29,7 @@ public class ValueOrderHeuristicFactory {
 
         switch(name){
             case "LeastConstrainingValue":
-                return new LeastConstrainingValueHeuristic(this.csp, forwardChecking);
+                return new LeastConstrainingValueHeuristic(this.csp, forwardChecking, random);
             default:
                 throw new InvalidParameterException();
         }
@@ -29,8 +37,8 @@ public class ValueOrderHeuristicFactory {
 
     private class NullValueOrderHeuristic implements ValueOrderHeuristic {
         @Override
-        public List<Object> orderValues(String variable, Domain domains, Assignment assignment) {
-            return new ArrayList<>(domains.get(variable));
+        public int[] orderValues(int variable, Domain domains, Assignment assignment) {
+            return domains.values(variable);
         }
     }
 }
@@ -4,5 +4,12 @@ import student.Assignment;
 import student.Domain;
 
 public interface VariableOrderHeuristic {
-    String selectVariable(Assignment assignment, Domain domains);
+    int selectVariable(Assignment assignment, Domain domains);
+
+    /***
+     * Called for the domains of every search before the first assignment,
+     * lets the heuristic attach its reversible state to the domains
+     */
+    default void prepare(Domain domains){
+    }
 }
@@ -1,22 +1,36 @@
 package student.algorithm;
 
-import student.CSP;
+import student.CompiledCSP;
 
 import java.security.InvalidParameterException;
+import java.util.Random;
 
 public class VariableOrderHeuristicFactory {
-    private final CSP csp;
+    private final CompiledCSP csp;
+    private final ConstraintWeights weights;
+    private final Random random;
 
-    public VariableOrderHeuristicFactory(CSP csp){
+    public VariableOrderHeuristicFactory(CompiledCSP csp, ConstraintWeights weights){
+        this(csp, weights, null);
+    }
+
+    /***
+     * With random the heuristics break the ties at random instead of by the lowest variable id
+     */
+    public VariableOrderHeuristicFactory(CompiledCSP csp, ConstraintWeights weights, Random random){
         this.csp = csp;
+        this.weights = weights;
+        this.random = random;
     }
 
     public VariableOrderHeuristic create(String name){
         switch(name){
             case "MostConstrainingVariable":
-                return new MostConstrainingVariableHeuristic(this.csp);
+                return new MostConstrainingVariableHeuristic(this.csp, this.random);
             case "MostConstrainedVariable":
-                return new MostConstrainedVariableHeuristic(this.csp);
+                return new MostConstrainedVariableHeuristic(this.random);
+            case "DomWdeg":
+                return new DomWdegVariableHeuristic(this.csp, this.weights, this.random);
                 default:
                     throw new InvalidParameterException();
         }
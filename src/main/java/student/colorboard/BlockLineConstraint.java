@@ -1,25 +1,26 @@
 package student.colorboard;
 
 import student.Assignment;
-import student.constraints.DelegateConstraint;
+import student.CompiledCSP;
+import student.constraints.ConstraintBase;
 
 import java.security.InvalidParameterException;
-import java.util.LinkedList;
-import java.util.List;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.function.Predicate;
 
-public class BlockLineConstraint extends DelegateConstraint {
+public class BlockLineConstraint extends ConstraintBase {
     private final String blockLineVariable;
     private final String pixelVariable;
-    private final Integer pointMaskOffset;
-    private final List<char[]> valueSpace;
+    private final int pointMaskOffset;
+    private final LineConfigurations valueSpace;
 
-    public BlockLineConstraint(List<char[]> valueSpace,
+    public BlockLineConstraint(LineConfigurations valueSpace,
                                String blockLineVariable,
                                String orientation,
                                int row,
                                int coll){
 
-        super(getDependencies(blockLineVariable, row, coll));
         this.blockLineVariable = blockLineVariable;
         this.pixelVariable = "b"+ coll + ":" + row;
         this.valueSpace = valueSpace;
@@ -31,11 +32,10 @@ public class BlockLineConstraint extends DelegateConstraint {
         }
     }
 
-    private static List<String> getDependencies(String blockLineVariable, int row, int coll){
-        List<String> dependencies = new LinkedList<>();
-        dependencies.add(blockLineVariable);
-        dependencies.add("b"+ coll + ":" + row);
-        return dependencies;
+    @Override
+    protected void getScope(Collection<String> variables) {
+        variables.add(blockLineVariable);
+        variables.add(pixelVariable);
     }
 
     @Override
@@ -43,7 +43,44 @@ public class BlockLineConstraint extends DelegateConstraint {
         Character pixel = assignment.getValue(pixelVariable);
         Integer valueLine = assignment.getValue(blockLineVariable);
 
-        Character expected = this.valueSpace.get(valueLine)[pointMaskOffset];
-        return pixel.equals(expected);
+        return this.valueSpace.hasColor(valueLine, pointMaskOffset, pixel);
+    }
+
+    /***
+     * Resolves both variables and the colour code of each colour of the pixel once,
+     * the predicate only tests the bit of the cell
+     */
+    @Override
+    protected Predicate<Assignment> compilePredicate(CompiledCSP csp) {
+        if(!csp.getVariableIndex().contains(blockLineVariable) || !csp.getVariableIndex().contains(pixelVariable)){
+            return null;
+        }
+
+        int line = csp.getVariableIndex().getId(blockLineVariable);
+        int pixel = csp.getVariableIndex().getId(pixelVariable);
+        if(csp.getValueType(line) != Integer.class || csp.getValueType(pixel) != Character.class){
+            return null;
+        }
+
+        // Colour code of each colour of the pixel by its int code, -1 if the line has no such colour
+        int[] codes = new int[0];
+        for(int value = 0; value < csp.getValueCount(pixel); ++value){
+            char color = (Character)csp.getValue(pixel, value);
+            if(color >= codes.length){
+                int size = codes.length;
+                codes = Arrays.copyOf(codes, color + 1);
+                Arrays.fill(codes, size, codes.length, -1);
+            }
+            codes[color] = valueSpace.getCode(color);
+        }
+
+        int[] colorCodes = codes;
+        int cell = pointMaskOffset;
+        return a -> valueSpace.hasCode(a.getInt(line), cell, colorCodes[a.getInt(pixel)]);
+    }
+
+    @Override
+    public String toString() {
+        return "line(" + blockLineVariable + ", " + pixelVariable + ")";
     }
 }
@@ -2,22 +2,24 @@ package student.colorboard;
 
 import student.BacktrackingSolver;
 import student.CSP;
+import student.IntegerRange;
 import student.Solution;
 import student.Solver;
 import student.constraints.Constraint;
-import student.constraints.ConstraintBase;
-import student.constraints.c;
+import student.constraints.LineConstraint;
+import student.constraints.RegularConstraint;
+import student.constraints.TableConstraint;
 
 import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 
 /***
  * This class represents the CSP problem of finding the right board coloring
- * All constraints are binary
+ * The constraints depend on the LineEncoding, with the default BINARY encoding all of them are binary
  *
  * Variables:
- * The variable set is composed of those three sets:
- * {"bx:y" for each x in columns and each y in each row, indexing starts at 0} union
+ * {"bx:y" for each x in columns and each y in each row, indexing starts at 0}, with the BINARY encoding also
  * {"hx" for each row}
  * {"vx" for each column}
  *
@@ -28,12 +30,18 @@ import java.util.stream.Collectors;
  * the domain for speed efficiency.
  *
  * For each variable "hx" or "vx" the domain is the set of all possible configurations of blocks in the given
- * row or column.
+ * row or column. The configurations are numbered by LineConfigurations and the domain is the range of the numbers,
+ * a configuration is only created from its number when a constraint needs it.
  *
- * Constraints.
- * Constraints is a set of all such tuples, that links each pixel with its column or row variable.
+ * Constraints, by the encoding:
+ * LineEncoding.BINARY - a binary BlockLineConstraint links each pixel with its column and its row variable.
  * Formally Constraints = {("bx:y", "hx" for each x for each y if the color on y-th position of hx configuration is equal to bx:y}
  * union {("bx:y", "vx" for each x for each y if the color on y-th position of vx configuration is equal to bx:y}
+ * LineEncoding.TABLE - each row and column is a single n-ary table constraint over its pixels, whose tuples are
+ * the configurations of the line that agree with the colors the pixels can have.
+ * LineEncoding.LINE - each row and column is a single n-ary LineConstraint over its pixels propagated by a dynamic
+ * program, the configurations are not created, so it works for lines with too many configurations to enumerate.
+ * LineEncoding.REGULAR - like LINE with an n-ary RegularConstraint, the automaton accepting the lines of the clue.
  *
  * The default solver uses LeastConstrainingValueHeuristic and MostConstrainingVariable heuristics
  * It was tried empirically, that this finds the solution fastest.
@@ -42,17 +50,23 @@ public class ColorBoardCSPBinary implements CSP {
 
     private static final Character BLANK = '_';
     private final Board board;
+    private final LineEncoding encoding;
     private final int colls;
     private final int rows;
     private final List<String> variables;
     private final Map<String, Set<Object>> domains;
     private final Collection<Constraint> constraints;
 
-    private final List<char[]>[] horizontalVariableSpace;
-    private final List<char[]>[] verticalVariableSpace;
+    private final LineConfigurations[] horizontalVariableSpace;
+    private final LineConfigurations[] verticalVariableSpace;
 
     public ColorBoardCSPBinary(Board board){
+        this(board, LineEncoding.BINARY);
+    }
+
+    public ColorBoardCSPBinary(Board board, LineEncoding encoding){
         this.board = board;
+        this.encoding = encoding;
         this.rows = board.getRows();
         this.colls = board.getColls();
         this.variables = new ArrayList<>();
@@ -60,9 +74,26 @@ public class ColorBoardCSPBinary implements CSP {
         this.constraints = new ArrayList<>();
 
         createBoardVariables(variables, domains, board);
-        verticalVariableSpace = createConstraintVariables(variables, domains, "v", board.getVerticalConstraints(), board.getRows());
-        horizontalVariableSpace = createConstraintVariables(variables, domains, "h", board.getHorizontalConstraints(), board.getColls());
-        addBoardConstraints(constraints, board);
+        if(encoding == LineEncoding.LINE || encoding == LineEncoding.REGULAR){
+            verticalVariableSpace = null;
+            horizontalVariableSpace = null;
+            addLineConstraints(constraints, board);
+            return;
+        }
+
+        // The lines of the board pack their configurations from one budget
+        AtomicLong budget = new AtomicLong(LineConfigurations.MAX_PACKED_WORDS);
+        verticalVariableSpace = createLineConfigurations(board.getVerticalConstraints(), board.getRows(), budget);
+        horizontalVariableSpace = createLineConfigurations(board.getHorizontalConstraints(), board.getColls(), budget);
+
+        if(encoding == LineEncoding.TABLE){
+            addTableConstraints(constraints, board);
+        }
+        else {
+            createConstraintVariables(variables, domains, "v", verticalVariableSpace);
+            createConstraintVariables(variables, domains, "h", horizontalVariableSpace);
+            addBoardConstraints(constraints, board);
+        }
     }
 
     public List<char[][]> solve(){
@@ -125,113 +156,167 @@ public class ColorBoardCSPBinary implements CSP {
         }
     }
 
-    private static List<char[]>[] createConstraintVariables(List<String> variables, Map<String, Set<Object>> domains, String scopeName, List<BoardConstraint> constraints, int length) {
-        int[] sizes = new int[constraints.size()];
-        for (int i = 0; i < sizes.length; ++i) {
-            sizes[i] = constraints.get(i).getBlocks().size();
+    private static LineConfigurations[] createLineConfigurations(List<BoardConstraint> constraints, int length,
+                                                                 AtomicLong budget) {
+        LineConfigurations[] variableSpace = new LineConfigurations[constraints.size()];
+        for(int i = 0; i < constraints.size(); ++i) {
+            variableSpace[i] = new LineConfigurations(constraints.get(i).getBlocks(), length, BLANK, budget);
         }
 
-        class ConstraintCreationScope{
-            public int prepareConstraintRecursive(int[][] linspace, List<Block> blocks, int coll, int minpos, int i, int size) {
-                if (i >= size) {
-                    return length;
-                }
+        return variableSpace;
+    }
 
-                Block block = blocks.get(i);
-                int newMinPos = minpos + block.getLength()
-                        + ((i + 1 < size && block.getColor() == blocks.get(i + 1).getColor()) ? 1 : 0);
+    private static void createConstraintVariables(List<String> variables, Map<String, Set<Object>> domains, String scopeName, LineConfigurations[] variableSpace) {
+        for(int i = 0; i < variableSpace.length; ++i) {
+            String variableName = scopeName + (i + 1);
+            variables.add(variableName);
+            // The configurations are numbered, the domain is the range of their indices
+            domains.put(variableName, new IntegerRange(0, variableSpace[i].size()));
+        }
+    }
 
-                int maxpos = prepareConstraintRecursive(linspace, blocks, coll, newMinPos, i + 1, size);
-                int newMaxPos = maxpos - block.getLength()
-                        - ((i + 1 < size && block.getColor() == blocks.get(i + 1).getColor()) ? 1 : 0);
+    private void addBoardConstraints(Collection<Constraint> constraints, Board board) {
+        for(int row = 0; row < board.getRows(); ++row){
+            for(int coll = 0; coll < board.getColls(); ++coll){
+                constraints.add(new BlockLineConstraint(
+                        horizontalVariableSpace[row],
+                        "h"+(1 + row), "h", row, coll));
+
+                constraints.add(new BlockLineConstraint(
+                        verticalVariableSpace[coll],
+                        "v"+(1 + coll), "v", row, coll));
 
-                // Add domains in valid range
-                linspace[i][0] = minpos;
-                linspace[i][1] = newMaxPos;
-                return newMaxPos;
             }
+        }
+    }
 
-            private char[] renderBlocks(List<Block> blocks, int[] positions){
-                char[] place = new char[length];
-                for(int i = 0; i < place.length;++i){
-                    place[i] = BLANK;
-                }
+    private void addTableConstraints(Collection<Constraint> constraints, Board board) {
+        for(int row = 0; row < board.getRows(); ++row){
+            List<String> pixels = new ArrayList<>();
+            for(int coll = 0; coll < board.getColls(); ++coll){
+                pixels.add("b" + coll + ":" + row);
+            }
 
-                for(int i = 0; i < positions.length;++i){
-                    Block block = blocks.get(i);
-                    Character color = block.getColor();
-                    for(int k = positions[i]; k < positions[i] + block.getLength(); ++k){
-                        place[k] = color;
-                    }
-                }
-                return place;
+            constraints.add(new TableConstraint(pixels, createTuples(horizontalVariableSpace[row], pixels)));
+        }
+
+        for(int coll = 0; coll < board.getColls(); ++coll){
+            List<String> pixels = new ArrayList<>();
+            for(int row = 0; row < board.getRows(); ++row){
+                pixels.add("b" + coll + ":" + row);
             }
 
-            public int createValuesRecursive(List<Block> blocks, int[][] linspace, int index, int[] positions,
-                                             List<char[]> valueSpace,int offset){
-                if(index < linspace.length){
-                    int start = linspace[index][0];
-                    if(index > 0){
-                        // Remove used positions
-                        start = positions[index - 1] + linspace[index][0] - linspace[index - 1][0];
-                    }
-
-                    for(int i = start; i <= linspace[index][1]; ++i){
-                        positions[index] = i;
-                        offset = createValuesRecursive(blocks, linspace, index + 1, positions, valueSpace, offset);
-                    }
-                }
-                else{
-                    // Export solution
-                    valueSpace.add(renderBlocks(blocks, positions));
-                    offset = offset + 1;
-                }
+            constraints.add(new TableConstraint(pixels, createTuples(verticalVariableSpace[coll], pixels)));
+        }
+    }
 
-                return offset;
+    private void addLineConstraints(Collection<Constraint> constraints, Board board) {
+        for(int row = 0; row < board.getRows(); ++row){
+            List<String> pixels = new ArrayList<>();
+            for(int coll = 0; coll < board.getColls(); ++coll){
+                pixels.add("b" + coll + ":" + row);
             }
+
+            constraints.add(createLineConstraint(pixels, board.getHorizontalConstraints().get(row), encoding));
         }
 
-        ConstraintCreationScope creationScope = new ConstraintCreationScope();
-        List<char[]>[] variableSpace = new List[constraints.size()];
-        for(int i = 0; i < constraints.size(); ++i) {
-            String variableName = scopeName + (i + 1);
-            variables.add(variableName);
-            Set<Object> d = new HashSet<>();
-            domains.put(variableName, d);
+        for(int coll = 0; coll < board.getColls(); ++coll){
+            List<String> pixels = new ArrayList<>();
+            for(int row = 0; row < board.getRows(); ++row){
+                pixels.add("b" + coll + ":" + row);
+            }
+
+            constraints.add(createLineConstraint(pixels, board.getVerticalConstraints().get(coll), encoding));
+        }
+    }
 
-            List<Block> blocks = constraints.get(i).getBlocks();
-            int[][] linspace = new int[blocks.size()][2];
-            creationScope.prepareConstraintRecursive(linspace, blocks, i, 0, 0, blocks.size());
+    private static Constraint createLineConstraint(List<String> pixels, BoardConstraint boardConstraint,
+                                                   LineEncoding encoding){
+        List<Block> blocks = boardConstraint.getBlocks();
+        if(encoding == LineEncoding.REGULAR){
+            return createRegularConstraint(pixels, blocks);
+        }
+
+        Object[] colors = new Object[blocks.size()];
+        int[] lengths = new int[blocks.size()];
+        for(int i = 0; i < blocks.size(); ++i){
+            colors[i] = blocks.get(i).getColor();
+            lengths[i] = blocks.get(i).getLength();
+        }
+
+        return new LineConstraint(pixels, colors, lengths, BLANK);
+    }
+
+    /***
+     * The automaton of the clue: gap state g(j) before block j loops on blank, state b(j, t) follows
+     * the t-th cell of block j. A finished block goes on by a blank to the next gap, or straight into
+     * the next block if its colour is different.
+     */
+    private static RegularConstraint createRegularConstraint(List<String> pixels, List<Block> blocks){
+        List<Map<Object, Integer>> transitions = new ArrayList<>();
+        int[] gaps = new int[blocks.size() + 1];
+        int[] firstCells = new int[blocks.size()];
+        for(int j = 0; j <= blocks.size(); ++j){
+            gaps[j] = transitions.size();
+            transitions.add(new HashMap<>());
+            if(j < blocks.size()){
+                firstCells[j] = transitions.size();
+                for(int t = 0; t < blocks.get(j).getLength(); ++t){
+                    transitions.add(new HashMap<>());
+                }
+            }
+        }
 
-            int[] positions = new int[blocks.size()];
-            List<char[]> valueSpace = new ArrayList<>();
-            creationScope.createValuesRecursive(blocks, linspace,0, positions, valueSpace, 0);
+        List<Integer> accepting = new ArrayList<>();
+        accepting.add(gaps[blocks.size()]);
+        for(int j = 0; j <= blocks.size(); ++j){
+            transitions.get(gaps[j]).put(BLANK, gaps[j]);
+            if(j == blocks.size()){
+                break;
+            }
 
-            for(int j = 0; j < valueSpace.size(); ++j){
-                d.add(j);
+            Character color = blocks.get(j).getColor();
+            int last = firstCells[j] + blocks.get(j).getLength() - 1;
+            transitions.get(gaps[j]).put(color, firstCells[j]);
+            for(int cell = firstCells[j]; cell < last; ++cell){
+                transitions.get(cell).put(color, cell + 1);
             }
 
-            variableSpace[i] = valueSpace;
+            transitions.get(last).put(BLANK, gaps[j + 1]);
+            if(j + 1 == blocks.size()){
+                accepting.add(last);
+            } else if(!color.equals(blocks.get(j + 1).getColor())){
+                transitions.get(last).put(blocks.get(j + 1).getColor(), firstCells[j + 1]);
+            }
         }
 
-        return variableSpace;
+        return new RegularConstraint(pixels, transitions, gaps[0], accepting);
     }
 
-    private void addBoardConstraints(Collection<Constraint> constraints, Board board) {
-        for(int row = 0; row < board.getRows(); ++row){
-            for(int coll = 0; coll < board.getColls(); ++coll){
-                constraints.add(new BlockLineConstraint(
-                        horizontalVariableSpace[row],
-                        "h"+(1 + row), "h", row, coll));
+    private List<Object[]> createTuples(LineConfigurations valueSpace, List<String> pixels){
+        // Configurations giving a pixel a colour outside of its domain are left out
+        List<Set<Object>> pixelColors = new ArrayList<>();
+        for(String pixel : pixels){
+            pixelColors.add(domains.get(pixel));
+        }
 
-                constraints.add(new BlockLineConstraint(
-                        verticalVariableSpace[coll],
-                        "v"+(1 + coll), "v", row, coll));
+        long[] allowed = valueSpace.getCellMasks(pixelColors);
+        List<Object[]> tuples = new ArrayList<>();
+        for(int index = 0; index < valueSpace.size(); ++index){
+            if(!valueSpace.agrees(index, allowed)){
+                continue;
+            }
 
+            char[] configuration = valueSpace.create(index);
+            Object[] tuple = new Object[configuration.length];
+            for(int i = 0; i < configuration.length; ++i){
+                tuple[i] = configuration[i];
             }
+            tuples.add(tuple);
         }
-    }
 
+        return tuples;
+    }
 
     private List<char[][]> exportSolutions(Collection<Solution> solutions){
         List<char[][]> solutionsParsed = new ArrayList<>();
@@ -0,0 +1,358 @@
+package student.colorboard;
+
+import java.security.InvalidParameterException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/***
+ * All placements of the blocks of a line, numbered without enumerating them.
+ * A configuration is given by the start offsets of its blocks, the configurations are numbered
+ * in the lexicographic order of the offsets. placements[j][p] counts the placements of the blocks j..
+ * with block j starting at p or later, ranking and unranking walk these counts block by block.
+ * The constraints read the configurations on every check, so they are stored packed in blocks of consecutive
+ * configurations, each cell as its colour code in the fewest bits (a power of two, so a cell never spans
+ * two words), and checking a cell is a shift and a mask. All lines of a model share one budget of words:
+ * a line that fits into the rest of it is packed up front, the blocks of the others when they are first read,
+ * once the budget is spent the configurations of the other blocks are unranked on every check.
+ */
+public class LineConfigurations {
+    // Words of the packed configurations of all lines sharing a budget
+    public static final long MAX_PACKED_WORDS = 1L << 22;
+    // A block packs 2^BLOCK_BITS consecutive configurations
+    private static final int BLOCK_BITS = 10;
+
+    private final int length;
+    private final char blank;
+    private final char[] colors;
+    private final int[] lengths;
+    // Cells after block j before the next one may start, 1 if the next block has the same colour
+    private final int[] gaps;
+    private final long[][] placements;
+    // Colour of each colour code, the blank has code 0
+    private final char[] codes;
+    // Words of the mask of one colour in getCellMasks
+    private final int words;
+    // Bits of the colour code of a cell in the packed configurations
+    private final int cellBits;
+    // Codes of each block of configurations, null until packed, no blocks if the configurations do not fit into int ids
+    private final AtomicReferenceArray<long[]> packed;
+    // Words the lines sharing the budget may still pack
+    private final AtomicLong budget;
+
+    public LineConfigurations(List<Block> blocks, int length, char blank){
+        this(blocks, length, blank, new AtomicLong(MAX_PACKED_WORDS));
+    }
+
+    /***
+     * budget holds the words the lines of a model may still pack, it is shared by all of them
+     */
+    public LineConfigurations(List<Block> blocks, int length, char blank, AtomicLong budget){
+        this.length = length;
+        this.blank = blank;
+        this.budget = budget;
+        this.colors = new char[blocks.size()];
+        this.lengths = new int[blocks.size()];
+        this.gaps = new int[blocks.size()];
+        for(int j = 0; j < blocks.size(); ++j){
+            colors[j] = blocks.get(j).getColor();
+            lengths[j] = blocks.get(j).getLength();
+        }
+
+        for(int j = 0; j + 1 < colors.length; ++j){
+            gaps[j] = colors[j] == colors[j + 1] ? 1 : 0;
+        }
+
+        this.placements = new long[colors.length + 1][length + 2];
+        for(int p = 0; p <= length + 1; ++p){
+            placements[colors.length][p] = 1;
+        }
+
+        for(int j = colors.length - 1; j >= 0; --j){
+            for(int p = length; p >= 0; --p){
+                int next = p + lengths[j] + gaps[j];
+                long here = p + lengths[j] <= length ? placements[j + 1][Math.min(next, length + 1)] : 0;
+                // The count saturates, size rejects it anyway
+                long count = placements[j][p + 1] + here;
+                placements[j][p] = count < 0 ? Long.MAX_VALUE : count;
+            }
+        }
+
+        this.codes = createCodes(blank, colors);
+        this.words = (length + 63) >>> 6;
+        int bits = 1;
+        while((1 << bits) < codes.length){
+            bits <<= 1;
+        }
+        this.cellBits = bits;
+        if(count() > Integer.MAX_VALUE){
+            this.packed = null;
+            return;
+        }
+
+        this.packed = new AtomicReferenceArray<>((int)((count() + (1 << BLOCK_BITS) - 1) >>> BLOCK_BITS));
+        long lineWords = 0;
+        for(int block = 0; block < packed.length(); ++block){
+            lineWords += getBlockWords(block);
+        }
+
+        if(reserve(lineWords)){
+            for(int block = 0; block < packed.length(); ++block){
+                packed.set(block, pack(block));
+            }
+        }
+    }
+
+    private static char[] createCodes(char blank, char[] colors){
+        StringBuilder codes = new StringBuilder().append(blank);
+        for(char color : colors){
+            if(codes.indexOf(String.valueOf(color)) < 0){
+                codes.append(color);
+            }
+        }
+
+        return codes.toString().toCharArray();
+    }
+
+    /***
+     * Returns the colour code of the colour, -1 if no cell of the line can have it
+     */
+    public int getCode(char color){
+        for(int code = 0; code < codes.length; ++code){
+            if(codes[code] == color){
+                return code;
+            }
+        }
+
+        return -1;
+    }
+
+    private int getBlockWords(int block){
+        int first = block << BLOCK_BITS;
+        long last = Math.min(count(), (long)first + (1 << BLOCK_BITS));
+        return (int)(((last - first) * length * cellBits + 63) >>> 6);
+    }
+
+    /***
+     * Takes the words from the budget, false if not enough of them are left
+     */
+    private boolean reserve(long required){
+        long left = budget.get();
+        while(left >= required){
+            if(budget.compareAndSet(left, left - required)){
+                return true;
+            }
+            left = budget.get();
+        }
+
+        return false;
+    }
+
+    /***
+     * Returns the packed codes of the block, packs them if the budget allows it, otherwise returns null
+     */
+    private long[] getCodes(int block){
+        if(packed == null){
+            return null;
+        }
+
+        long[] cells = packed.get(block);
+        if(cells != null || !reserve(getBlockWords(block))){
+            return cells;
+        }
+
+        // Another thread may have packed the block meanwhile
+        cells = pack(block);
+        if(packed.compareAndSet(block, null, cells)){
+            return cells;
+        }
+
+        budget.addAndGet(cells.length);
+        return packed.get(block);
+    }
+
+    private long[] pack(int block){
+        int first = block << BLOCK_BITS;
+        long[] cells = new long[getBlockWords(block)];
+        for(int index = first; index < first + (1 << BLOCK_BITS) && index < count(); ++index){
+            int[] offsets = getOffsets(index);
+            for(int j = 0; j < offsets.length; ++j){
+                long code = getCode(colors[j]);
+                for(int cell = offsets[j]; cell < offsets[j] + lengths[j]; ++cell){
+                    long position = getPosition(index, cell);
+                    cells[(int)(position >>> 6)] |= code << position;
+                }
+            }
+        }
+
+        return cells;
+    }
+
+    // Bit of the code of the cell in the codes of the block of the configuration
+    private long getPosition(int index, int cell){
+        return ((long)(index & ((1 << BLOCK_BITS) - 1)) * length + cell) * cellBits;
+    }
+
+    private int getCodeAt(long[] cells, int index, int cell){
+        long position = getPosition(index, cell);
+        return (int)(cells[(int)(position >>> 6)] >>> position) & ((1 << cellBits) - 1);
+    }
+
+    /***
+     * Returns the number of configurations without creating them
+     */
+    public long count(){
+        return placements[0][0];
+    }
+
+    /***
+     * Returns the number of configurations, which have to fit into int ids
+     */
+    public int size(){
+        if(count() > Integer.MAX_VALUE){
+            throw new InvalidParameterException("Too many configurations of a line, use LineEncoding.LINE");
+        }
+
+        return (int)count();
+    }
+
+    /***
+     * Returns the start offsets of the blocks of the configuration with the index
+     */
+    public int[] getOffsets(int index){
+        int[] offsets = new int[colors.length];
+        long rest = index;
+        int p = 0;
+        for(int j = 0; j < colors.length; ++j){
+            // The last start s >= p with at most rest placements starting before it
+            long[] counts = placements[j];
+            int low = p;
+            int high = length - lengths[j];
+            while(low < high){
+                int middle = (low + high + 1) >>> 1;
+                if(counts[p] - counts[middle] <= rest){
+                    low = middle;
+                } else {
+                    high = middle - 1;
+                }
+            }
+
+            offsets[j] = low;
+            rest -= counts[p] - counts[low];
+            p = low + lengths[j] + gaps[j];
+        }
+
+        return offsets;
+    }
+
+    /***
+     * Returns the index of the configuration with the start offsets of the blocks
+     */
+    public int indexOf(int[] offsets){
+        long index = 0;
+        int p = 0;
+        for(int j = 0; j < colors.length; ++j){
+            index += placements[j][p] - placements[j][offsets[j]];
+            p = offsets[j] + lengths[j] + gaps[j];
+        }
+
+        return (int)index;
+    }
+
+    /***
+     * Returns the colour of the cell in the configuration with the index
+     */
+    public char getColor(int index, int cell){
+        long[] cells = getCodes(index >>> BLOCK_BITS);
+        if(cells != null){
+            return codes[getCodeAt(cells, index, cell)];
+        }
+
+        int[] offsets = getOffsets(index);
+        for(int j = 0; j < offsets.length && offsets[j] <= cell; ++j){
+            if(cell < offsets[j] + lengths[j]){
+                return colors[j];
+            }
+        }
+
+        return blank;
+    }
+
+    /***
+     * Returns true if the cell has the colour in the configuration with the index
+     */
+    public boolean hasColor(int index, int cell, char color){
+        return hasCode(index, cell, getCode(color));
+    }
+
+    /***
+     * Returns true if the cell has the colour with the colour code in the configuration with the index,
+     * false for the code -1
+     */
+    public boolean hasCode(int index, int cell, int code){
+        if(code < 0){
+            return false;
+        }
+
+        long[] cells = getCodes(index >>> BLOCK_BITS);
+        if(cells == null){
+            return getColor(index, cell) == codes[code];
+        }
+
+        return getCodeAt(cells, index, cell) == code;
+    }
+
+    /***
+     * Returns the masks of the cells that can have each colour code, one mask of words per code.
+     * cellColors.get(cell) are the colours the cell can have, the colours the line has not are left out
+     */
+    public long[] getCellMasks(List<? extends Collection<?>> cellColors){
+        if(cellColors.size() != length){
+            throw new InvalidParameterException("cellColors");
+        }
+
+        long[] allowed = new long[codes.length * words];
+        for(int cell = 0; cell < length; ++cell){
+            for(Object color : cellColors.get(cell)){
+                int code = color instanceof Character ? getCode((Character)color) : -1;
+                if(code >= 0){
+                    allowed[code * words + (cell >>> 6)] |= 1L << cell;
+                }
+            }
+        }
+
+        return allowed;
+    }
+
+    /***
+     * Returns true if each cell of the configuration with the index has one of the colours the cell masks allow
+     */
+    public boolean agrees(int index, long[] allowed){
+        long[] cells = getCodes(index >>> BLOCK_BITS);
+        char[] configuration = cells == null ? create(index) : null;
+        for(int cell = 0; cell < length; ++cell){
+            int code = cells != null ? getCodeAt(cells, index, cell) : getCode(configuration[cell]);
+            if((allowed[code * words + (cell >>> 6)] & (1L << cell)) == 0){
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /***
+     * Returns the cells of the configuration with the index
+     */
+    public char[] create(int index){
+        char[] cells = new char[length];
+        Arrays.fill(cells, blank);
+        int[] offsets = getOffsets(index);
+        for(int j = 0; j < offsets.length; ++j){
+            Arrays.fill(cells, offsets[j], offsets[j] + lengths[j], colors[j]);
+        }
+
+        return cells;
+    }
+}
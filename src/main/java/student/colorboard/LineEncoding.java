@@ -0,0 +1,29 @@
+package student.colorboard;
+
+/***
+ * How ColorBoardCSPBinary links the pixels of a row or a column with the possible block configurations.
+ */
+public enum LineEncoding {
+    /***
+     * One variable per line with all its configurations as domain and a binary BlockLineConstraint
+     * between the line variable and each of its pixels
+     */
+    BINARY,
+
+    /***
+     * One table constraint per line over its pixels, the tuples are the configurations of the line
+     */
+    TABLE,
+
+    /***
+     * One line constraint per line over its pixels, propagated by a dynamic program over the blocks,
+     * the configurations of the lines are never enumerated
+     */
+    LINE,
+
+    /***
+     * One regular constraint per line over its pixels, the automaton of the clue has a state per block cell
+     * and per gap, so its size follows the clue instead of the number of configurations
+     */
+    REGULAR
+}
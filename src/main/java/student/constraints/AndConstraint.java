@@ -1,8 +1,12 @@
 package student.constraints;
 
 import student.Assignment;
+import student.CompiledCSP;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
 public final class AndConstraint extends LogicalConstraint {
@@ -21,6 +25,67 @@ public final class AndConstraint extends LogicalConstraint {
         return true;
     }
 
+    @Override
+    public ConstraintBase simplify() {
+        List<ConstraintBase> result = new ArrayList<>(this.children.size());
+        for(ConstraintBase child : this.children){
+            ConstraintBase simplified = child.simplify();
+            if(simplified == BooleanConstant.FALSE){
+                return simplified;
+            } else if(simplified instanceof AndConstraint){
+                result.addAll(((AndConstraint)simplified).children);
+            } else if(simplified != BooleanConstant.TRUE){
+                result.add(simplified);
+            }
+        }
+
+        if(result.isEmpty()){
+            return BooleanConstant.TRUE;
+        } else if(result.size() == 1){
+            return result.get(0);
+        }
+
+        return new AndConstraint(result);
+    }
+
+    @Override
+    protected ConstraintBase negate() {
+        List<ConstraintBase> result = new ArrayList<>(this.children.size());
+        for(ConstraintBase child : this.children){
+            result.add(child.negate());
+        }
+
+        return new OrConstraint(result).simplify();
+    }
+
+    @Override
+    protected Predicate<Assignment> compilePredicate(CompiledCSP csp) {
+        @SuppressWarnings("unchecked")
+        Predicate<Assignment>[] predicates = (Predicate<Assignment>[])new Predicate<?>[this.children.size()];
+        int i = 0;
+        for(ConstraintBase constraint : this.children){
+            predicates[i] = constraint.compilePredicate(csp);
+            if(predicates[i++] == null){
+                return null;
+            }
+        }
+
+        if(predicates.length == 2){
+            Predicate<Assignment> first = predicates[0];
+            Predicate<Assignment> second = predicates[1];
+            return a -> first.test(a) && second.test(a);
+        }
+
+        return a -> {
+            for(Predicate<Assignment> predicate : predicates){
+                if(!predicate.test(a))
+                    return false;
+            }
+
+            return true;
+        };
+    }
+
     @Override
     public String toString() {
         return "(" + this.children.stream().map(x->x.toString()).collect(Collectors.joining(" && ")) + ")";
@@ -1,10 +1,34 @@
 package student.constraints;
 import student.Assignment;
+import student.CompiledCSP;
 
 import java.util.Collection;
+import java.util.function.ToIntFunction;
 
 abstract class Atomic<TValue> {
     protected abstract void getScope(Collection<String> variables);
 
     protected abstract TValue getValue(Assignment assignment);
+
+    /***
+     * Returns an equivalent simplified expression
+     */
+    protected Atomic<TValue> simplify(){
+        return this;
+    }
+
+    /***
+     * Returns the class of the value, null if it is not known
+     */
+    protected Class<?> getValueType(CompiledCSP csp){
+        return null;
+    }
+
+    /***
+     * Compiles the expression to an evaluator over the int codes of the values (see Assignment.toInt),
+     * returns null if the expression cannot be compiled
+     */
+    protected ToIntFunction<Assignment> compileInt(CompiledCSP csp){
+        return null;
+    }
 }
@@ -0,0 +1,54 @@
+package student.constraints;
+
+import student.Assignment;
+import student.CompiledCSP;
+
+import java.util.Collection;
+import java.util.function.Predicate;
+
+/***
+ * Constraint that is always or never satisfied, produced by constant folding
+ */
+public final class BooleanConstant extends ConstraintBase {
+    public static final BooleanConstant TRUE = new BooleanConstant(true);
+    public static final BooleanConstant FALSE = new BooleanConstant(false);
+
+    private final boolean value;
+
+    private BooleanConstant(boolean value){
+        this.value = value;
+    }
+
+    public static BooleanConstant of(boolean value){
+        return value ? TRUE : FALSE;
+    }
+
+    public boolean getValue(){
+        return value;
+    }
+
+    @Override
+    public boolean evaluate(Assignment assignment) {
+        return value;
+    }
+
+    @Override
+    protected void getScope(Collection<String> variables) {
+
+    }
+
+    @Override
+    protected ConstraintBase negate() {
+        return of(!value);
+    }
+
+    @Override
+    protected Predicate<Assignment> compilePredicate(CompiledCSP csp) {
+        return value ? a -> true : a -> false;
+    }
+
+    @Override
+    public String toString() {
+        return Boolean.toString(value);
+    }
+}
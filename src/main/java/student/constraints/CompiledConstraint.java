@@ -0,0 +1,39 @@
+package student.constraints;
+
+import student.Assignment;
+
+import java.util.Set;
+import java.util.function.Predicate;
+
+/***
+ * Constraint evaluated by a compiled predicate instead of the expression tree.
+ * The predicate reads the variables by their ids, so the assignment must use the variable index of the compiled CSP.
+ */
+public final class CompiledConstraint implements Constraint {
+    private final ConstraintBase source;
+    private final Predicate<Assignment> predicate;
+
+    CompiledConstraint(ConstraintBase source, Predicate<Assignment> predicate){
+        this.source = source;
+        this.predicate = predicate;
+    }
+
+    public ConstraintBase getSource(){
+        return source;
+    }
+
+    @Override
+    public Set<String> getScope() {
+        return source.getScope();
+    }
+
+    @Override
+    public boolean evaluate(Assignment assignment) {
+        return predicate.test(assignment);
+    }
+
+    @Override
+    public String toString() {
+        return source.toString();
+    }
+}
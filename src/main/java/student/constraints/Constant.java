@@ -1,8 +1,10 @@
 package student.constraints;
 
 import student.Assignment;
+import student.CompiledCSP;
 
 import java.util.Collection;
+import java.util.function.ToIntFunction;
 
 public final class Constant<TValue> extends Atomic<TValue>{
     private final TValue value;
@@ -21,6 +23,29 @@ public final class Constant<TValue> extends Atomic<TValue>{
         return this.value;
     }
 
+    @Override
+    protected Class<?> getValueType(CompiledCSP csp) {
+        return this.value == null ? null : this.value.getClass();
+    }
+
+    @Override
+    protected ToIntFunction<Assignment> compileInt(CompiledCSP csp) {
+        if(!Assignment.isIntCoded(getValueType(csp))){
+            return null;
+        }
+
+        int code = Assignment.toInt(this.value);
+        return a -> code;
+    }
+
+    TValue getConstant(){
+        return this.value;
+    }
+
+    int getCode(){
+        return Assignment.toInt(this.value);
+    }
+
     @Override
     public String toString() {
         return this.value.toString();
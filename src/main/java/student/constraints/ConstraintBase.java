@@ -1,8 +1,12 @@
 package student.constraints;
 
 import student.Assignment;
+import student.CompiledCSP;
+
 import java.util.HashSet;
 import java.util.Set;
+import java.util.function.Predicate;
+import java.util.function.ToIntFunction;
 
 public abstract class ConstraintBase extends Atomic<Boolean> implements Constraint {
     private Set<String> cachedScope;
@@ -23,4 +27,52 @@ public abstract class ConstraintBase extends Atomic<Boolean> implements Constrai
     protected Boolean getValue(Assignment assignment) {
         return evaluate(assignment);
     }
+
+    /***
+     * Returns an equivalent constraint with constants folded, negations pushed down to the comparisons,
+     * nested conjunctions, disjunctions and sums flattened and the comparisons between two shifted
+     * variables rewritten to DifferenceConstraint
+     */
+    @Override
+    public ConstraintBase simplify() {
+        return this;
+    }
+
+    /***
+     * Returns the simplified negation of this simplified constraint
+     */
+    protected ConstraintBase negate() {
+        return new Not(this);
+    }
+
+    @Override
+    protected Class<?> getValueType(CompiledCSP csp) {
+        return Boolean.class;
+    }
+
+    @Override
+    protected ToIntFunction<Assignment> compileInt(CompiledCSP csp) {
+        Predicate<Assignment> predicate = compilePredicate(csp);
+        if(predicate == null){
+            return null;
+        }
+
+        return a -> predicate.test(a) ? 1 : 0;
+    }
+
+    /***
+     * Compiles the constraint to a predicate over the int codes of the values,
+     * returns null if the constraint cannot be compiled
+     */
+    protected Predicate<Assignment> compilePredicate(CompiledCSP csp) {
+        return null;
+    }
+
+    /***
+     * Returns the compiled constraint or this constraint if it cannot be compiled
+     */
+    public final Constraint compile(CompiledCSP csp){
+        Predicate<Assignment> predicate = compilePredicate(csp);
+        return predicate == null ? this : new CompiledConstraint(this, predicate);
+    }
 }
@@ -0,0 +1,139 @@
+package student.constraints;
+
+import student.Assignment;
+import student.CompiledCSP;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/***
+ * Canonical form x - y <= bound of the comparisons between two integer variables shifted by constants.
+ * The simplifier rewrites all of <, <=, >, >= between such terms to this form.
+ * The bounds propagator handles it as a LinearConstraint.
+ */
+public final class DifferenceConstraint extends ConstraintBase {
+    private final String first;
+    private final String second;
+    private final int bound;
+
+    public DifferenceConstraint(String first, String second, int bound){
+        this.first = first;
+        this.second = second;
+        this.bound = bound;
+    }
+
+    public String getFirst(){
+        return first;
+    }
+
+    public String getSecond(){
+        return second;
+    }
+
+    public int getBound(){
+        return bound;
+    }
+
+    /***
+     * Normalizes left + offset <= right, returns null if the sides are not sums of variables and constants.
+     * Two variables with the coefficients 1 and -1 give a DifferenceConstraint, a single variable a bound
+     * comparison with a constant and larger sums a LinearConstraint.
+     */
+    static ConstraintBase lessEqual(Atomic<Integer> left, Atomic<Integer> right, int offset){
+        // sum(coefficients * variables) <= bound
+        Map<String, Integer> coefficients = new LinkedHashMap<>();
+        int[] constant = new int[1];
+        if(!addTerms(left, 1, coefficients, constant) || !addTerms(right, -1, coefficients, constant)){
+            return null;
+        }
+
+        coefficients.values().removeIf(x -> x == 0);
+        int bound = -constant[0] - offset;
+        List<String> variables = new ArrayList<>(coefficients.keySet());
+        if(variables.isEmpty()){
+            return BooleanConstant.of(0 <= bound);
+        } else if(variables.size() == 1 && coefficients.get(variables.get(0)) == 1){
+            return new LessThanEqualConstraint(new VariableAccess<>(variables.get(0)), new Constant<>(bound));
+        } else if(variables.size() == 1 && coefficients.get(variables.get(0)) == -1){
+            return new GreaterThanEqualConstraint(new VariableAccess<>(variables.get(0)), new Constant<>(-bound));
+        } else if(variables.size() == 2 && coefficients.get(variables.get(0)) == -coefficients.get(variables.get(1))
+                && Math.abs(coefficients.get(variables.get(0))) == 1){
+            return coefficients.get(variables.get(0)) == 1
+                    ? new DifferenceConstraint(variables.get(0), variables.get(1), bound)
+                    : new DifferenceConstraint(variables.get(1), variables.get(0), bound);
+        }
+
+        int[] values = new int[variables.size()];
+        for(int i = 0; i < values.length; ++i){
+            values[i] = coefficients.get(variables.get(i));
+        }
+
+        return new LinearConstraint(variables, values, LinearConstraint.Relation.LESS_EQUAL, bound);
+    }
+
+    private static boolean addTerms(Atomic<Integer> term, int sign, Map<String, Integer> coefficients, int[] constant){
+        if(term instanceof Constant && ((Constant<?>)term).getConstant() instanceof Integer){
+            constant[0] += sign * (Integer)((Constant<?>)term).getConstant();
+            return true;
+        } else if(term instanceof VariableAccess){
+            coefficients.merge(((VariableAccess<?>)term).getName(), sign, Integer::sum);
+            return true;
+        } else if(term instanceof Plus){
+            for(Atomic<Integer> child : ((Plus)term).children){
+                if(!addTerms(child, sign, coefficients, constant)){
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        return false;
+    }
+
+    public LinearConstraint toLinear(){
+        return new LinearConstraint(Arrays.asList(first, second), new int[]{1, -1},
+                LinearConstraint.Relation.LESS_EQUAL, bound);
+    }
+
+    @Override
+    public boolean evaluate(Assignment assignment) {
+        return (Integer)assignment.getValue(first) - (Integer)assignment.getValue(second) <= bound;
+    }
+
+    @Override
+    protected void getScope(Collection<String> variables) {
+        variables.add(first);
+        variables.add(second);
+    }
+
+    @Override
+    protected ConstraintBase negate() {
+        // x - y > bound  <=>  y - x <= -bound - 1
+        return new DifferenceConstraint(second, first, -bound - 1);
+    }
+
+    @Override
+    protected Predicate<Assignment> compilePredicate(CompiledCSP csp) {
+        if(!csp.getVariableIndex().contains(first) || !csp.getVariableIndex().contains(second)){
+            return null;
+        }
+
+        int x = csp.getVariableIndex().getId(first);
+        int y = csp.getVariableIndex().getId(second);
+        if(csp.getValueType(x) != Integer.class || csp.getValueType(y) != Integer.class){
+            return null;
+        }
+
+        return a -> a.getInt(x) - a.getInt(y) <= bound;
+    }
+
+    @Override
+    public String toString() {
+        return "($" + first + " - $" + second + " <= " + bound + ")";
+    }
+}
@@ -1,8 +1,11 @@
 package student.constraints;
 
 import student.Assignment;
+import student.CompiledCSP;
 
 import java.util.Collection;
+import java.util.function.Predicate;
+import java.util.function.ToIntFunction;
 
 public final class EqualConstraint<TValue> extends ConstraintBase {
 
@@ -25,6 +28,66 @@ public final class EqualConstraint<TValue> extends ConstraintBase {
         second.getScope(variables);
     }
 
+    @Override
+    public ConstraintBase simplify() {
+        Atomic<TValue> first = this.first.simplify();
+        Atomic<TValue> second = this.second.simplify();
+        if(first instanceof Constant && second instanceof Constant){
+            Object value = ((Constant<?>)first).getConstant();
+            return BooleanConstant.of(value != null && value.equals(((Constant<?>)second).getConstant()));
+        }
+
+        // Comparison of a constraint with a boolean constant
+        Boolean value = getBoolean(second);
+        Atomic<TValue> other = first;
+        if(value == null){
+            value = getBoolean(first);
+            other = second;
+        }
+
+        if(value != null && other instanceof ConstraintBase){
+            return value ? (ConstraintBase)other : ((ConstraintBase)other).negate();
+        }
+
+        return new EqualConstraint<>(first, second);
+    }
+
+    private static Boolean getBoolean(Atomic<?> atomic){
+        if(atomic instanceof BooleanConstant){
+            return ((BooleanConstant)atomic).getValue();
+        } else if(atomic instanceof Constant && ((Constant<?>)atomic).getConstant() instanceof Boolean){
+            return (Boolean)((Constant<?>)atomic).getConstant();
+        }
+
+        return null;
+    }
+
+    @Override
+    protected Predicate<Assignment> compilePredicate(CompiledCSP csp) {
+        Class<?> type = first.getValueType(csp);
+        if(!Assignment.isIntCoded(type) || type != second.getValueType(csp)){
+            return null;
+        }
+
+        if(second instanceof Constant){
+            ToIntFunction<Assignment> left = first.compileInt(csp);
+            int right = ((Constant<?>)second).getCode();
+            return left == null ? null : a -> left.applyAsInt(a) == right;
+        } else if(first instanceof Constant){
+            int left = ((Constant<?>)first).getCode();
+            ToIntFunction<Assignment> right = second.compileInt(csp);
+            return right == null ? null : a -> left == right.applyAsInt(a);
+        }
+
+        ToIntFunction<Assignment> left = first.compileInt(csp);
+        ToIntFunction<Assignment> right = second.compileInt(csp);
+        if(left == null || right == null){
+            return null;
+        }
+
+        return a -> left.applyAsInt(a) == right.applyAsInt(a);
+    }
+
     @Override
     public String toString() {
         return "(" + first.toString() + " == " + second.toString() + ")";
@@ -1,8 +1,11 @@
 package student.constraints;
 
 import student.Assignment;
+import student.CompiledCSP;
 
 import java.util.Collection;
+import java.util.function.Predicate;
+import java.util.function.ToIntFunction;
 
 public final class GreaterThanConstraint extends ConstraintBase {
 
@@ -25,6 +28,44 @@ public final class GreaterThanConstraint extends ConstraintBase {
         second.getScope(variables);
     }
 
+    @Override
+    public ConstraintBase simplify() {
+        Atomic<Integer> first = this.first.simplify();
+        Atomic<Integer> second = this.second.simplify();
+        ConstraintBase normalized = DifferenceConstraint.lessEqual(second, first, 1);
+        return normalized != null ? normalized : new GreaterThanConstraint(first, second);
+    }
+
+    @Override
+    protected ConstraintBase negate() {
+        return new LessThanEqualConstraint(first, second).simplify();
+    }
+
+    @Override
+    protected Predicate<Assignment> compilePredicate(CompiledCSP csp) {
+        if(first.getValueType(csp) != Integer.class || second.getValueType(csp) != Integer.class){
+            return null;
+        }
+
+        if(second instanceof Constant){
+            ToIntFunction<Assignment> left = first.compileInt(csp);
+            int right = ((Constant<?>)second).getCode();
+            return left == null ? null : a -> left.applyAsInt(a) > right;
+        } else if(first instanceof Constant){
+            int left = ((Constant<?>)first).getCode();
+            ToIntFunction<Assignment> right = second.compileInt(csp);
+            return right == null ? null : a -> left > right.applyAsInt(a);
+        }
+
+        ToIntFunction<Assignment> left = first.compileInt(csp);
+        ToIntFunction<Assignment> right = second.compileInt(csp);
+        if(left == null || right == null){
+            return null;
+        }
+
+        return a -> left.applyAsInt(a) > right.applyAsInt(a);
+    }
+
     @Override
     public String toString() {
         return "(" + first.toString() + " > " + second.toString() + ")";
@@ -0,0 +1,99 @@
+package student.constraints;
+
+import student.Assignment;
+
+import java.security.InvalidParameterException;
+import java.util.*;
+
+/***
+ * Nonogram line: the cells, in their order, have to show the blocks in the given order.
+ * A block is a run of its length of cells with its colour, the other cells are blank.
+ * Two consecutive blocks of the same colour are separated by at least one blank cell,
+ * blocks of different colours may touch.
+ */
+public class LineConstraint implements Constraint {
+    private final List<String> cells;
+    private final Set<String> scope;
+    private final Object[] colors;
+    private final int[] lengths;
+    private final Object blank;
+
+    public LineConstraint(List<String> cells, Object[] colors, int[] lengths, Object blank){
+        this.cells = new ArrayList<>(cells);
+        this.scope = new LinkedHashSet<>(cells);
+        this.colors = colors.clone();
+        this.lengths = lengths.clone();
+        this.blank = blank;
+        if(this.scope.size() != this.cells.size() || colors.length != lengths.length){
+            throw new InvalidParameterException("cells");
+        }
+    }
+
+    public List<String> getCells(){
+        return cells;
+    }
+
+    public int getBlockCount(){
+        return lengths.length;
+    }
+
+    public Object getColor(int block){
+        return colors[block];
+    }
+
+    public int getLength(int block){
+        return lengths[block];
+    }
+
+    public Object getBlank(){
+        return blank;
+    }
+
+    /***
+     * Returns true if the blocks j and j + 1 need a blank cell between them
+     */
+    public boolean needsGap(int block){
+        return block + 1 < colors.length && colors[block].equals(colors[block + 1]);
+    }
+
+    @Override
+    public Set<String> getScope() {
+        return scope;
+    }
+
+    @Override
+    public boolean evaluate(Assignment assignment) {
+        int block = 0;
+        int i = 0;
+        while(i < cells.size()){
+            Object value = assignment.getValue(cells.get(i));
+            if(blank.equals(value)){
+                i++;
+                continue;
+            }
+
+            // The run of the next block has to start here
+            if(block == colors.length || !colors[block].equals(value)){
+                return false;
+            }
+
+            for(int k = 0; k < lengths[block]; ++k, ++i){
+                if(i == cells.size() || !colors[block].equals(assignment.getValue(cells.get(i)))){
+                    return false;
+                }
+            }
+
+            if(i < cells.size() && colors[block].equals(assignment.getValue(cells.get(i)))){
+                return false;
+            }
+            block++;
+        }
+
+        return block == colors.length;
+    }
+
+    @Override
+    public String toString() {
+        return "line(" + String.join(", ", cells) + ") " + Arrays.toString(lengths);
+    }
+}
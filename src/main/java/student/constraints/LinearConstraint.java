@@ -0,0 +1,127 @@
+package student.constraints;
+
+import student.Assignment;
+import student.CompiledCSP;
+
+import java.security.InvalidParameterException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Predicate;
+
+/***
+ * Linear constraint sum(coefficients[i] * variables[i]) relation bound over integer variables
+ */
+public final class LinearConstraint extends ConstraintBase {
+    public enum Relation {LESS_EQUAL, EQUAL, GREATER_EQUAL}
+
+    private final String[] variables;
+    private final int[] coefficients;
+    private final Relation relation;
+    private final int bound;
+
+    public LinearConstraint(List<String> variables, int[] coefficients, Relation relation, int bound){
+        if(variables.size() != coefficients.length){
+            throw new InvalidParameterException("Every variable needs a coefficient");
+        }
+
+        this.variables = variables.toArray(new String[variables.size()]);
+        this.coefficients = coefficients.clone();
+        this.relation = relation;
+        this.bound = bound;
+    }
+
+    public int getArity(){
+        return variables.length;
+    }
+
+    public String getVariable(int i){
+        return variables[i];
+    }
+
+    public int getCoefficient(int i){
+        return coefficients[i];
+    }
+
+    public Relation getRelation(){
+        return relation;
+    }
+
+    public int getBound(){
+        return bound;
+    }
+
+    private boolean test(long sum){
+        switch (relation){
+            case LESS_EQUAL:
+                return sum <= bound;
+            case GREATER_EQUAL:
+                return sum >= bound;
+            default:
+                return sum == bound;
+        }
+    }
+
+    @Override
+    public boolean evaluate(Assignment assignment) {
+        long sum = 0;
+        for(int i = 0; i < variables.length; ++i){
+            sum += (long)coefficients[i] * (Integer)assignment.getValue(variables[i]);
+        }
+
+        return test(sum);
+    }
+
+    @Override
+    protected void getScope(Collection<String> variables) {
+        for(String var : this.variables){
+            variables.add(var);
+        }
+    }
+
+    @Override
+    protected ConstraintBase negate() {
+        switch (relation){
+            case LESS_EQUAL:
+                return new LinearConstraint(Arrays.asList(variables), coefficients, Relation.GREATER_EQUAL, bound + 1);
+            case GREATER_EQUAL:
+                return new LinearConstraint(Arrays.asList(variables), coefficients, Relation.LESS_EQUAL, bound - 1);
+            default:
+                return super.negate();
+        }
+    }
+
+    @Override
+    protected Predicate<Assignment> compilePredicate(CompiledCSP csp) {
+        int[] ids = new int[variables.length];
+        for(int i = 0; i < variables.length; ++i){
+            if(!csp.getVariableIndex().contains(variables[i])){
+                return null;
+            }
+
+            ids[i] = csp.getVariableIndex().getId(variables[i]);
+            if(csp.getValueType(ids[i]) != Integer.class){
+                return null;
+            }
+        }
+
+        return a -> {
+            long sum = 0;
+            for(int i = 0; i < ids.length; ++i){
+                sum += (long)coefficients[i] * a.getInt(ids[i]);
+            }
+            return test(sum);
+        };
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("(");
+        for(int i = 0; i < variables.length; ++i){
+            builder.append(i == 0 ? "" : " + ").append(coefficients[i]).append("*$").append(variables[i]);
+        }
+
+        String operator = relation == Relation.LESS_EQUAL ? " <= " : relation == Relation.GREATER_EQUAL ? " >= " : " == ";
+        return builder.append(operator).append(bound).append(")").toString();
+    }
+}
@@ -1,8 +1,10 @@
 package student.constraints;
 
 import student.Assignment;
+import student.CompiledCSP;
 
 import java.util.Collection;
+import java.util.function.Predicate;
 
 public final class Not extends ConstraintBase {
 
@@ -22,6 +24,22 @@ public final class Not extends ConstraintBase {
         constraint.getScope(variables);
     }
 
+    @Override
+    public ConstraintBase simplify() {
+        return constraint.simplify().negate();
+    }
+
+    @Override
+    protected ConstraintBase negate() {
+        return constraint;
+    }
+
+    @Override
+    protected Predicate<Assignment> compilePredicate(CompiledCSP csp) {
+        Predicate<Assignment> predicate = constraint.compilePredicate(csp);
+        return predicate == null ? null : a -> !predicate.test(a);
+    }
+
     @Override
     public String toString() {
         return "!" + this.constraint.toString();
@@ -1,8 +1,12 @@
 package student.constraints;
 
 import student.Assignment;
+import student.CompiledCSP;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
 public final class OrConstraint extends LogicalConstraint {
@@ -21,6 +25,67 @@ public final class OrConstraint extends LogicalConstraint {
         return false;
     }
 
+    @Override
+    public ConstraintBase simplify() {
+        List<ConstraintBase> result = new ArrayList<>(this.children.size());
+        for(ConstraintBase child : this.children){
+            ConstraintBase simplified = child.simplify();
+            if(simplified == BooleanConstant.TRUE){
+                return simplified;
+            } else if(simplified instanceof OrConstraint){
+                result.addAll(((OrConstraint)simplified).children);
+            } else if(simplified != BooleanConstant.FALSE){
+                result.add(simplified);
+            }
+        }
+
+        if(result.isEmpty()){
+            return BooleanConstant.FALSE;
+        } else if(result.size() == 1){
+            return result.get(0);
+        }
+
+        return new OrConstraint(result);
+    }
+
+    @Override
+    protected ConstraintBase negate() {
+        List<ConstraintBase> result = new ArrayList<>(this.children.size());
+        for(ConstraintBase child : this.children){
+            result.add(child.negate());
+        }
+
+        return new AndConstraint(result).simplify();
+    }
+
+    @Override
+    protected Predicate<Assignment> compilePredicate(CompiledCSP csp) {
+        @SuppressWarnings("unchecked")
+        Predicate<Assignment>[] predicates = (Predicate<Assignment>[])new Predicate<?>[this.children.size()];
+        int i = 0;
+        for(ConstraintBase constraint : this.children){
+            predicates[i] = constraint.compilePredicate(csp);
+            if(predicates[i++] == null){
+                return null;
+            }
+        }
+
+        if(predicates.length == 2){
+            Predicate<Assignment> first = predicates[0];
+            Predicate<Assignment> second = predicates[1];
+            return a -> first.test(a) || second.test(a);
+        }
+
+        return a -> {
+            for(Predicate<Assignment> predicate : predicates){
+                if(predicate.test(a))
+                    return true;
+            }
+
+            return false;
+        };
+    }
+
     @Override
     public String toString() {
         return "(" + this.children.stream().map(x->x.toString()).collect(Collectors.joining(" || ")) + ")";
@@ -1,8 +1,13 @@
 package student.constraints;
 
 import student.Assignment;
+import student.CompiledCSP;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.List;
+import java.util.function.ToIntFunction;
 import java.util.stream.Collectors;
 
 public final class Plus extends Numeric<Integer> {
@@ -20,6 +25,83 @@ public final class Plus extends Numeric<Integer> {
         return sum;
     }
 
+    @Override
+    protected Atomic<Integer> simplify() {
+        List<Atomic<Integer>> result = new ArrayList<>(this.children.size());
+        int constant = 0;
+        List<Atomic<Integer>> pending = new ArrayList<>(this.children);
+        for(int i = 0; i < pending.size(); ++i){
+            Atomic<Integer> simplified = pending.get(i).simplify();
+            if(simplified instanceof Plus){
+                pending.addAll(((Plus)simplified).children);
+            } else if(simplified instanceof Constant && ((Constant<?>)simplified).getConstant() instanceof Integer){
+                constant += ((Constant<Integer>)simplified).getConstant();
+            } else {
+                result.add(simplified);
+            }
+        }
+
+        if(result.isEmpty()){
+            return new Constant<>(constant);
+        } else if(constant == 0 && result.size() == 1){
+            return result.get(0);
+        } else if(constant != 0){
+            result.add(new Constant<>(constant));
+        }
+
+        return new Plus(result);
+    }
+
+    @Override
+    protected Class<?> getValueType(CompiledCSP csp) {
+        return Integer.class;
+    }
+
+    @Override
+    protected ToIntFunction<Assignment> compileInt(CompiledCSP csp) {
+        @SuppressWarnings("unchecked")
+        ToIntFunction<Assignment>[] compiled = (ToIntFunction<Assignment>[])new ToIntFunction<?>[this.children.size()];
+        int constant = 0;
+        int count = 0;
+        for(Atomic<Integer> child : this.children){
+            if(child.getValueType(csp) != Integer.class){
+                return null;
+            }
+
+            if(child instanceof Constant){
+                constant += ((Constant<Integer>)child).getCode();
+                continue;
+            }
+
+            ToIntFunction<Assignment> function = child.compileInt(csp);
+            if(function == null){
+                return null;
+            }
+            compiled[count++] = function;
+        }
+
+        int offset = constant;
+        if(count == 0){
+            return a -> offset;
+        } else if(count == 1){
+            ToIntFunction<Assignment> first = compiled[0];
+            return a -> first.applyAsInt(a) + offset;
+        } else if(count == 2){
+            ToIntFunction<Assignment> first = compiled[0];
+            ToIntFunction<Assignment> second = compiled[1];
+            return a -> first.applyAsInt(a) + second.applyAsInt(a) + offset;
+        }
+
+        ToIntFunction<Assignment>[] terms = Arrays.copyOf(compiled, count);
+        return a -> {
+            int sum = offset;
+            for(ToIntFunction<Assignment> term : terms){
+                sum += term.applyAsInt(a);
+            }
+            return sum;
+        };
+    }
+
     @Override
     public String toString() {
         return "(" + this.children.stream().map(x->x.toString()).collect(Collectors.joining(" + ")) + ")";
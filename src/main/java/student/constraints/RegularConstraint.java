@@ -0,0 +1,98 @@
+package student.constraints;
+
+import student.Assignment;
+
+import java.security.InvalidParameterException;
+import java.util.*;
+
+/***
+ * Regular language constraint, the values of the variables read in their order have to be accepted by a
+ * deterministic automaton. The states are numbered from 0, transitions.get(s) maps a value to the state
+ * that follows s after reading it, a value without a transition rejects the word.
+ */
+public class RegularConstraint implements Constraint {
+    private final List<String> variables;
+    private final Set<String> scope;
+    private final List<Map<Object, Integer>> transitions;
+    private final int start;
+    private final boolean[] accepting;
+
+    public RegularConstraint(List<String> variables, List<Map<Object, Integer>> transitions,
+                             int start, Collection<Integer> accepting){
+        this.variables = new ArrayList<>(variables);
+        this.scope = new LinkedHashSet<>(variables);
+        this.transitions = new ArrayList<>();
+        this.start = start;
+        this.accepting = new boolean[transitions.size()];
+        if(this.scope.size() != this.variables.size()){
+            throw new InvalidParameterException("variables");
+        }
+
+        if(start < 0 || start >= transitions.size()){
+            throw new InvalidParameterException("start");
+        }
+
+        for(Map<Object, Integer> next : transitions){
+            for(int state : next.values()){
+                if(state < 0 || state >= transitions.size()){
+                    throw new InvalidParameterException("transitions");
+                }
+            }
+            this.transitions.add(new HashMap<>(next));
+        }
+
+        for(int state : accepting){
+            if(state < 0 || state >= transitions.size()){
+                throw new InvalidParameterException("accepting");
+            }
+            this.accepting[state] = true;
+        }
+    }
+
+    public List<String> getVariables(){
+        return variables;
+    }
+
+    public int getStateCount(){
+        return transitions.size();
+    }
+
+    public int getStart(){
+        return start;
+    }
+
+    /***
+     * Returns the states that follow the state by its values
+     */
+    public Map<Object, Integer> getTransitions(int state){
+        return Collections.unmodifiableMap(transitions.get(state));
+    }
+
+    public boolean isAccepting(int state){
+        return accepting[state];
+    }
+
+    @Override
+    public Set<String> getScope() {
+        return scope;
+    }
+
+    @Override
+    public boolean evaluate(Assignment assignment) {
+        int state = start;
+        for(String variable : variables){
+            Integer next = transitions.get(state).get(assignment.getValue(variable));
+            if(next == null){
+                return false;
+            }
+            state = next;
+        }
+
+        return accepting[state];
+    }
+
+    @Override
+    public String toString() {
+        return "regular(" + String.join(", ", variables) + ") " + transitions.size() + " states";
+    }
+}
@@ -0,0 +1,71 @@
+package student.constraints;
+
+import student.Assignment;
+
+import java.security.InvalidParameterException;
+import java.util.*;
+
+/***
+ * Extensional constraint, the values of the variables have to form one of the allowed tuples.
+ * The i-th value of each tuple belongs to the i-th variable.
+ */
+public class TableConstraint implements Constraint {
+    private final List<String> variables;
+    private final Set<String> scope;
+    private final List<Object[]> tuples;
+    private volatile Set<List<Object>> tupleLookup;
+
+    public TableConstraint(List<String> variables, List<Object[]> tuples){
+        this.variables = new ArrayList<>(variables);
+        this.scope = new LinkedHashSet<>(variables);
+        this.tuples = tuples;
+        if(this.scope.size() != this.variables.size()){
+            throw new InvalidParameterException("variables");
+        }
+    }
+
+    public List<String> getVariables(){
+        return variables;
+    }
+
+    public List<Object[]> getTuples(){
+        return tuples;
+    }
+
+    @Override
+    public Set<String> getScope() {
+        return scope;
+    }
+
+    private Set<List<Object>> getTupleLookup(){
+        Set<List<Object>> lookup = tupleLookup;
+        if(lookup == null){
+            synchronized (this){
+                if((lookup = tupleLookup) == null){
+                    lookup = new HashSet<>(tuples.size() * 2);
+                    for(Object[] tuple : tuples){
+                        lookup.add(Arrays.asList(tuple));
+                    }
+                    tupleLookup = lookup;
+                }
+            }
+        }
+
+        return lookup;
+    }
+
+    @Override
+    public boolean evaluate(Assignment assignment) {
+        Object[] values = new Object[variables.size()];
+        for(int i = 0; i < values.length; ++i){
+            values[i] = assignment.getValue(variables.get(i));
+        }
+
+        return getTupleLookup().contains(Arrays.asList(values));
+    }
+
+    @Override
+    public String toString() {
+        return "table(" + String.join(", ", variables) + ") [" + tuples.size() + " tuples]";
+    }
+}
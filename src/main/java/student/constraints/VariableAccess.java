@@ -1,9 +1,11 @@
 package student.constraints;
 
 import student.Assignment;
+import student.CompiledCSP;
 import student.Variable;
 
 import java.util.Collection;
+import java.util.function.ToIntFunction;
 
 public class VariableAccess<TValue> extends Atomic<TValue> {
 
@@ -13,6 +15,10 @@ public class VariableAccess<TValue> extends Atomic<TValue> {
         this.var = variableName;
     }
 
+    String getName(){
+        return this.var;
+    }
+
     @Override
     protected void getScope(Collection<String> variables) {
         variables.add(var);
@@ -23,6 +29,25 @@ public class VariableAccess<TValue> extends Atomic<TValue> {
         return assignment.getValue(this.var);
     }
 
+    @Override
+    protected Class<?> getValueType(CompiledCSP csp) {
+        if(!csp.getVariableIndex().contains(this.var)){
+            return null;
+        }
+
+        return csp.getValueType(csp.getVariableIndex().getId(this.var));
+    }
+
+    @Override
+    protected ToIntFunction<Assignment> compileInt(CompiledCSP csp) {
+        if(!Assignment.isIntCoded(getValueType(csp))){
+            return null;
+        }
+
+        int id = csp.getVariableIndex().getId(this.var);
+        return a -> a.getInt(id);
+    }
+
     @Override
     public String toString() {
         return "$" + this.var;
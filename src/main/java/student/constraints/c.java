@@ -4,6 +4,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Iterator;
+import java.util.List;
 import java.util.concurrent.atomic.AtomicInteger;
 
 public final class c {
@@ -43,6 +44,15 @@ public final class c {
         return new GreaterThanEqualConstraint(a1, a2);
     }
 
+    public static ConstraintBase diff(String first, String second, int bound){
+        return new DifferenceConstraint(first, second, bound);
+    }
+
+    public static ConstraintBase linear(List<String> variables, int[] coefficients,
+                                        LinearConstraint.Relation relation, int bound){
+        return new LinearConstraint(variables, coefficients, relation, bound);
+    }
+
     public static <TValue> Atomic<TValue> c(TValue value){
         return new Constant<>(value);
     }
@@ -1,13 +1,36 @@
 package student;
 
 import java.io.IOException;
+import java.math.BigInteger;
+import java.security.InvalidParameterException;
 import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 import junit.framework.Test;
 import junit.framework.TestCase;
 import junit.framework.TestSuite;
+import student.algorithm.AC3;
+import student.algorithm.ConstraintWeights;
+import student.algorithm.DomWdegVariableHeuristic;
+import student.algorithm.ForwardChecking;
+import student.algorithm.LeastConstrainingValueHeuristic;
+import student.algorithm.MostConstrainedVariableHeuristic;
+import student.algorithm.MostConstrainingVariableHeuristic;
+import student.algorithm.NogoodStore;
+import student.algorithm.Propagator;
+import student.algorithm.PropagatorFactory;
+import student.algorithm.PrunedDomains;
 import student.colorboard.*;
+import student.constraints.BooleanConstant;
+import student.constraints.CompiledConstraint;
 import student.constraints.Constraint;
+import student.constraints.ConstraintBase;
+import student.constraints.DifferenceConstraint;
+import student.constraints.LinearConstraint;
+import student.constraints.c;
 
 /**
  * Unit test for simple App.
@@ -172,6 +195,888 @@ public class CSPTest
         assertEquals(2, solutions.size());
     }
 
+    public void testArcConsistencyModes() throws IOException{
+        for(AC3.Mode mode : AC3.Mode.values()){
+            assertSolvesSmallBoard(new SolverConfiguration("LeastConstrainingValue",
+                    "MostConstrainingVariable").setArcConsistency(mode));
+        }
+
+        // y <= x with 70000 * 1000 pairs is over the support budget, so the constraint checks are counted
+        int[] checks = new int[1];
+        Constraint atMost = new ConstraintBase() {
+            @Override
+            protected void getScope(Collection<String> variables) {
+                variables.add("x");
+                variables.add("y");
+            }
+
+            @Override
+            public boolean evaluate(Assignment assignment) {
+                checks[0]++;
+                return (Integer)assignment.getValue("y") <= (Integer)assignment.getValue("x");
+            }
+        };
+        Map<String, Set<Object>> domains = new HashMap<>();
+        domains.put("x", new IntegerRange(0, 70000));
+        domains.put("y", new IntegerRange(0, 1000));
+        CompiledCSP csp = new CompiledCSP(new CSP() {
+            public List<String> getVariables() { return Arrays.asList("x", "y"); }
+            public Map<String, Set<Object>> getDomains() { return domains; }
+            public Collection<Constraint> getConstraints() { return Collections.singletonList(atMost); }
+        });
+        int x = csp.getVariableIndex().getId("x");
+        int y = csp.getVariableIndex().getId("y");
+        Map<AC3.Mode, Integer> expected = new EnumMap<>(AC3.Mode.class);
+        // Removing x = 500 takes the support of y = 500 only. AC3 searches every y again,
+        // AC3RM searches y = 500 from x = 0, AC2001 resumes it after x = 500.
+        expected.put(AC3.Mode.AC3RM, 501);
+        expected.put(AC3.Mode.AC2001, 1);
+        for(AC3.Mode mode : AC3.Mode.values()){
+            Domain domain = new Domain(csp);
+            AC3 ac3 = createAC3(csp, domain, mode);
+            Assignment assignment = new StaticAssignment(csp.getVariableIndex());
+            assertEquals(0, ac3.propagate(assignment, domain));
+            int mark = domain.mark();
+
+            checks[0] = 0;
+            domain.remove(x, csp.getValueId(x, 500));
+            assertEquals(0, ac3.propagate(assignment, domain));
+            assertEquals(1000, domain.size(y));
+            if(mode == AC3.Mode.AC3){
+                assertTrue(checks[0] > 1000 * 499);
+            } else {
+                assertEquals((int)expected.get(mode), checks[0]);
+            }
+
+            // The restored domains need no search, AC2001 restores its position in the domain of x with them
+            domain.restore(mark);
+            checks[0] = 0;
+            assertEquals(0, ac3.propagate(assignment, domain));
+            domain.remove(x, csp.getValueId(x, 500));
+            assertEquals(0, ac3.propagate(assignment, domain));
+            if(mode == AC3.Mode.AC2001){
+                assertEquals(1, checks[0]);
+            }
+        }
+    }
+
+    public void testDomWdeg() throws IOException{
+        assertSolvesSmallBoard(new SolverConfiguration(null, "DomWdeg"));
+        assertSolvesSmallBoard(new SolverConfiguration("LeastConstrainingValue", "DomWdeg"));
+
+        // Two independent constraints, the tie between the variables goes to x until z < w causes a wipeout
+        CompiledCSP csp = compile(Arrays.asList("x", "y", "z", "w"), range(3),
+                Arrays.asList(c.lt(c.v("x"), c.v("y")), c.lt(c.v("z"), c.v("w"))));
+        int z = csp.getVariableIndex().getId("z");
+        int zw = csp.getVariableConstraints(z)[0];
+        BinaryConstraintLookup lookup = BacktrackingSolver.createBinaryConstraintLookup(csp);
+        ConstraintWeights weights = new ConstraintWeights(csp.getConstraintCount());
+        ForwardChecking forwardChecking = new ForwardChecking(csp, lookup, new BinarySupports(csp, lookup), weights);
+        DomWdegVariableHeuristic heuristic = new DomWdegVariableHeuristic(csp, weights);
+        Domain domain = new Domain(csp);
+        StaticAssignment assignment = new StaticAssignment(csp.getVariableIndex());
+        assertEquals(csp.getVariableIndex().getId("x"), heuristic.selectVariable(assignment, domain));
+
+        // z = 2 leaves no value to w, trying it out in the value heuristic does not count
+        int[] ordered = new LeastConstrainingValueHeuristic(csp, forwardChecking).orderValues(z, domain, assignment);
+        assertEquals(2, ordered.length);
+        for(int constraint = 0; constraint < csp.getConstraintCount(); ++constraint){
+            assertEquals(1, weights.get(constraint));
+        }
+        assertEquals(csp.getVariableIndex().getId("x"), heuristic.selectVariable(assignment, domain));
+
+        // The wipeout in the search increments only the weight of z < w
+        int mark = domain.mark();
+        int value = csp.getValueId(z, 2);
+        assignment.set(z, 2);
+        domain.assign(z, value);
+        assertEquals(-1, forwardChecking.execute(assignment, z, value, domain));
+        domain.restore(mark);
+        assignment.reset(z);
+        for(int constraint = 0; constraint < csp.getConstraintCount(); ++constraint){
+            assertEquals(constraint == zw ? 2 : 1, weights.get(constraint));
+        }
+        assertEquals(z, heuristic.selectVariable(assignment, domain));
+    }
+
+    public void testRestarts() throws IOException{
+        RestartSchedule luby = RestartSchedule.luby(1);
+        long[] expected = {1, 1, 2, 1, 1, 2, 4, 1, 1, 2, 1, 1, 2, 4, 8};
+        for(int i = 0; i < expected.length; ++i){
+            assertEquals(expected[i], luby.getLimit(i));
+        }
+
+        for(String heuristic : new String[]{ "DomWdeg", "MostConstrainedVariable" }){
+            assertSolvesSmallBoard(new SolverConfiguration("LeastConstrainingValue", heuristic)
+                    .setRestarts(RestartSchedule.luby(1)).setRandomSeed(42L));
+        }
+
+        // a, b, c, d take different values and only a few leave a value to e, the failures force restarts
+        CompiledCSP csp = compile(Arrays.asList("a", "b", "c", "d", "e"), range(5), Arrays.asList(
+                c.not(c.eq(c.v("a"), c.v("b"))), c.not(c.eq(c.v("a"), c.v("c"))), c.not(c.eq(c.v("a"), c.v("d"))),
+                c.not(c.eq(c.v("b"), c.v("c"))), c.not(c.eq(c.v("b"), c.v("d"))), c.not(c.eq(c.v("c"), c.v("d"))),
+                c.eq(c.plus(c.v("a"), c.v("b")), c.plus(c.v("c"), c.v("e"))), c.lt(c.v("d"), c.v("e"))));
+        Set<Solution> withoutRestarts = new HashSet<>(new BacktrackingSolver(csp,
+                new SolverConfiguration(null, "MostConstrainedVariable")).solve());
+        BacktrackingSolver.SolutionIterator iterator = (BacktrackingSolver.SolutionIterator)new BacktrackingSolver(csp,
+                new SolverConfiguration(null, "MostConstrainedVariable").setRestarts(RestartSchedule.luby(1))).iterator();
+        List<Solution> solutions = new ArrayList<>();
+        iterator.forEachRemaining(solutions::add);
+        assertFalse(withoutRestarts.isEmpty());
+        assertTrue(iterator.getRun() > 0);
+        assertTrue(iterator.getNogoods().size() > 0);
+        assertEquals(withoutRestarts.size(), solutions.size());
+        assertEquals(withoutRestarts, new HashSet<>(solutions));
+    }
+
+    public void testNogoodStore(){
+        CompiledCSP csp = compile(Arrays.asList("x", "y", "z"), range(3), Collections.emptyList());
+        Domain domain = new Domain(csp);
+        StaticAssignment assignment = new StaticAssignment(csp.getVariableIndex());
+        NogoodStore nogoods = new NogoodStore(3, domain.getTrail());
+        int x = 0, y = 1, z = 2;
+        int zero = csp.getValueId(x, 0), one = csp.getValueId(y, 1), two = csp.getValueId(z, 2);
+
+        // The run refuted z = 2 below x = 0 and y = 1, the next run adds it at the root
+        nogoods.add(new int[]{ x, y, z }, new int[]{ zero, one, two });
+        assertEquals(1, nogoods.size());
+        assertEquals(0, nogoods.propagate(assignment, domain));
+        int root = domain.mark();
+
+        domain.assign(x, zero);
+        assertEquals(0, nogoods.propagate(assignment, domain));
+        int mark = domain.mark();
+        domain.assign(y, one);
+        assertEquals(1, nogoods.propagate(assignment, domain));
+        assertFalse(domain.contains(z, two));
+        assertEquals(2, domain.size(z));
+
+        // The decisions in other orders, the watches follow the decisions that do not hold
+        domain.restore(mark);
+        assertTrue(domain.contains(z, two));
+        domain.assign(z, two);
+        assertEquals(1, nogoods.propagate(assignment, domain));
+        assertFalse(domain.contains(y, one));
+        domain.restore(root);
+        domain.assign(y, one);
+        domain.assign(z, two);
+        assertEquals(1, nogoods.propagate(assignment, domain));
+        assertFalse(domain.contains(x, zero));
+
+        // All decisions hold
+        domain.restore(root);
+        domain.assign(x, zero);
+        domain.assign(y, one);
+        domain.assign(z, two);
+        assertEquals(-1, nogoods.propagate(assignment, domain));
+
+        // A nogood with a single decision removes its value at once
+        domain.restore(root);
+        nogoods.add(new int[]{ y }, new int[]{ csp.getValueId(y, 0) });
+        assertEquals(1, nogoods.propagate(assignment, domain));
+        assertFalse(domain.contains(y, csp.getValueId(y, 0)));
+    }
+
+    public void testBackjumping() throws IOException{
+        for(String heuristic : new String[]{ "MostConstrainedVariable", "MostConstrainingVariable", "DomWdeg" }){
+            assertSolvesSmallBoard(new SolverConfiguration(null, heuristic).setBackjumping(true));
+        }
+
+        // With x0 = 0 no two of x2, x3, x4 may be equal, x1 between them takes no part in the conflict
+        List<Constraint> constraints = new ArrayList<>();
+        for(int i = 2; i < 5; ++i){
+            for(int j = i + 1; j < 5; ++j){
+                constraints.add(c.or(c.not(c.eq(c.v("x" + i), c.v("x" + j))), c.eq(c.v("x0"), c.c(1))));
+            }
+        }
+        CompiledCSP csp = compile(Arrays.asList("x0", "x1", "x2", "x3", "x4"), range(2), constraints);
+        BacktrackingSolver.SolutionIterator chronological = (BacktrackingSolver.SolutionIterator)new BacktrackingSolver(csp,
+                new SolverConfiguration(null, "MostConstrainedVariable")).iterator();
+        BacktrackingSolver.SolutionIterator backjumping = (BacktrackingSolver.SolutionIterator)new BacktrackingSolver(csp,
+                new SolverConfiguration(null, "MostConstrainedVariable").setBackjumping(true)).iterator();
+        Set<Solution> expected = new HashSet<>();
+        chronological.forEachRemaining(expected::add);
+        Set<Solution> solutions = new HashSet<>();
+        backjumping.forEachRemaining(solutions::add);
+        assertEquals(16, expected.size());
+        assertEquals(expected, solutions);
+
+        // The failed x2 below x0 = 0, x1 = 1 is not tried again
+        assertEquals(chronological.getDecisions() - 3, backjumping.getDecisions());
+    }
+
+    public void testParallelSearch() throws IOException{
+        SolverConfiguration configuration = new SolverConfiguration("LeastConstrainingValue",
+                "MostConstrainedVariable").setParallelism(4).setSplitDepth(3);
+        assertSolvesSmallBoard(configuration);
+        assertSolvesSmallBoard(configuration.setDeterministic(false));
+
+        // The deterministic mode keeps the order of the sequential search
+        ColorBoardCSP csp = new ColorBoardCSP(smallBoard());
+        List<Solution> expected = new BacktrackingSolver(csp, "LeastConstrainingValue",
+                "MostConstrainedVariable").solve();
+        assertEquals(expected, new BacktrackingSolver(csp, configuration.setDeterministic(true)).solve());
+
+        // Hundreds of solutions spread over many subtrees
+        CompiledCSP compiled = compile(Arrays.asList("a", "b", "c", "d", "e"), range(5), Arrays.asList(
+                c.lt(c.v("a"), c.v("b")), c.not(c.eq(c.v("c"), c.v("d"))),
+                c.not(c.eq(c.plus(c.v("b"), c.v("c")), c.v("e")))));
+        for(String heuristic : new String[]{ "MostConstrainedVariable", "DomWdeg" }){
+            List<Solution> sequential = new BacktrackingSolver(compiled,
+                    new SolverConfiguration("LeastConstrainingValue", heuristic)).solve();
+            SolverConfiguration parallel = new SolverConfiguration("LeastConstrainingValue", heuristic)
+                    .setParallelism(4).setSplitDepth(2);
+            List<Solution> ordered = new BacktrackingSolver(compiled, parallel).solve();
+            List<Solution> unordered = new BacktrackingSolver(compiled, parallel.setDeterministic(false)).solve();
+            assertTrue(sequential.size() > 100);
+            for(List<Solution> solutions : Arrays.asList(ordered, unordered)){
+                assertEquals(sequential.size(), solutions.size());
+                assertEquals(new HashSet<>(sequential), new HashSet<>(solutions));
+            }
+
+            // dom/wdeg learns its weights per thread, the order of the sequential search is kept without them
+            if(heuristic.equals("MostConstrainedVariable")){
+                assertEquals(sequential, ordered);
+            }
+
+            // Every subtree reseeds its random generator, so the seeded search is reproducible on any thread
+            parallel.setDeterministic(true).setRandomSeed(7L);
+            List<Solution> seeded = new BacktrackingSolver(compiled, parallel).solve();
+            assertEquals(new HashSet<>(sequential), new HashSet<>(seeded));
+            for(int run = 0; run < 5; ++run){
+                assertEquals(seeded, new BacktrackingSolver(compiled, parallel).solve());
+            }
+        }
+    }
+
+    public void testPortfolioSolver() throws IOException, InterruptedException{
+        assertSolvesSmallBoard(PortfolioSolver::new);
+
+        // The first configuration blocks until it is cancelled, the second one wins the race
+        List<SolverConfiguration> configurations = Arrays.asList(
+                new SolverConfiguration(null, "MostConstrainedVariable"),
+                new SolverConfiguration("LeastConstrainingValue", "MostConstrainedVariable"));
+        CountDownLatch cancelled = new CountDownLatch(1);
+        Set<BinarySupports> tables = Collections.synchronizedSet(Collections.newSetFromMap(new IdentityHashMap<>()));
+        PortfolioSolver portfolio = new PortfolioSolver(new ColorBoardCSP(smallBoard()), configurations){
+            @Override
+            BacktrackingSolver createSolver(CompiledCSP csp, BinaryConstraintLookup binaryConstraintLookup,
+                                            BinarySupports binarySupports, SolverConfiguration configuration){
+                tables.add(binarySupports);
+                if(configuration != configurations.get(0)){
+                    return super.createSolver(csp, binaryConstraintLookup, binarySupports, configuration);
+                }
+
+                return new BacktrackingSolver(csp, binaryConstraintLookup, binarySupports, configuration){
+                    @Override
+                    public List<Solution> solve(){
+                        while(!isCancelled()){
+                            Thread.yield();
+                        }
+                        cancelled.countDown();
+                        return super.solve();
+                    }
+                };
+            }
+        };
+
+        assertSmallBoardSolutions(portfolio.solve());
+        assertTrue(cancelled.await(10, TimeUnit.SECONDS));
+        assertEquals(1, tables.size());
+    }
+
+    public void testSolutionStream() throws IOException{
+        ColorBoardCSPBinary csp = new ColorBoardCSPBinary(smallBoard());
+        Solver solver = new BacktrackingSolver(csp, "LeastConstrainingValue", "MostConstrainingVariable");
+        List<Solution> solutions = solver.solve();
+        assertSmallBoardSolutions(solutions);
+        assertEquals(solutions, solver.stream().collect(Collectors.toList()));
+        assertEquals(solutions.get(0), solver.stream().findFirst().get());
+        assertEquals(1, solver.stream().limit(1).count());
+    }
+
+    public void testCount() throws IOException{
+        Map<String, Set<Object>> domains = new HashMap<>();
+        for(String var : Arrays.asList("x", "y", "z")){
+            domains.put(var, new HashSet<>(Arrays.asList(0, 1, 2, 3)));
+        }
+
+        List<Constraint> constraints = Arrays.asList(c.lt(c.v("x"), c.v("y")));
+        CSP csp = new CSP() {
+            public List<String> getVariables() { return Arrays.asList("x", "y", "z"); }
+            public Map<String, Set<Object>> getDomains() { return domains; }
+            public Collection<Constraint> getConstraints() { return constraints; }
+        };
+
+        // 6 pairs x < y, z is free
+        BacktrackingSolver solver = new BacktrackingSolver(csp, "LeastConstrainingValue", "MostConstrainedVariable");
+        assertEquals(BigInteger.valueOf(24), solver.count());
+        assertEquals(24, solver.solve().size());
+
+        ColorBoardCSPBinary board = new ColorBoardCSPBinary(smallBoard());
+        assertEquals(BigInteger.valueOf(2),
+                new BacktrackingSolver(board, "LeastConstrainingValue", "MostConstrainingVariable").count());
+    }
+
+    public void testCompiledConstraints() throws IOException{
+        Board board = smallBoard();
+        ColorBoardCSP csp = new ColorBoardCSP(board);
+        CompiledCSP compiled = new CompiledCSP(csp);
+        Assignment ass1  = fromBoard(board, Parser.readSolution(SMALL_BOARD_SOLUTIONS[0]));
+        Assignment ass2  = fromBoard(board, Parser.readSolution(SMALL_BOARD_SOLUTIONS[1]));
+
+        // Mix both solutions so that some of the constraints are violated
+        StaticAssignment mixed = new StaticAssignment(compiled.getVariableIndex());
+        for(int var = 0; var < compiled.getVariableCount(); ++var){
+            String name = compiled.getVariableIndex().getName(var);
+            mixed.set(var, var % 2 == 0 ? ass1.getValue(name) : ass2.getValue(name));
+        }
+
+        int violated = 0;
+        for(int i = 0; i < compiled.getConstraintCount(); ++i){
+            Constraint constraint = compiled.getConstraint(i);
+            assertTrue(constraint instanceof CompiledConstraint);
+
+            boolean expected = ((CompiledConstraint)constraint).getSource().evaluate(mixed);
+            assertEquals(expected, constraint.evaluate(mixed));
+            violated += expected ? 0 : 1;
+        }
+
+        assertTrue(violated > 0);
+    }
+
+    public void testSimplifier(){
+        ConstraintBase difference = c.le(c.plus(c.v("x"), c.c(2)), c.v("y")).simplify();
+        assertTrue(difference instanceof DifferenceConstraint);
+        assertEquals(-2, ((DifferenceConstraint)difference).getBound());
+
+        ConstraintBase isIn = c.and(c.ge(c.c(3), c.v("x")), c.lt(c.c(3), c.plus(c.v("x"), c.c(2))));
+        ConstraintBase original = c.or(c.not(isIn), c.eq(c.eq(c.v("y"), c.c(1)), c.c(true)));
+        ConstraintBase simplified = original.simplify();
+        assertEquals(original.getScope(), simplified.getScope());
+
+        StaticAssignment assignment = new StaticAssignment();
+        for(int x = -1; x < 6; ++x){
+            for(int y = 0; y < 3; ++y){
+                assignment.set("x", x).set("y", y);
+                assertEquals(original.evaluate(assignment), simplified.evaluate(assignment));
+                assertEquals(!original.evaluate(assignment), c.not(original).simplify().evaluate(assignment));
+            }
+        }
+
+        assertEquals(BooleanConstant.TRUE, c.lt(c.plus(c.c(1), c.c(2)), c.c(4)).simplify());
+    }
+
+    public void testLinearBounds(){
+        Map<String, Set<Object>> domains = new HashMap<>();
+        for(String var : Arrays.asList("x", "y")){
+            domains.put(var, new HashSet<>(Arrays.asList(0, 1, 2, 3, 4, 5, 6, 7, 8, 9)));
+        }
+
+        List<Constraint> constraints = Arrays.asList(
+                c.linear(Arrays.asList("x", "y"), new int[]{2, 3}, LinearConstraint.Relation.LESS_EQUAL, 12),
+                c.le(c.plus(c.v("x"), c.c(2)), c.v("y")));
+        CompiledCSP csp = new CompiledCSP(new CSP() {
+            public List<String> getVariables() { return Arrays.asList("x", "y"); }
+            public Map<String, Set<Object>> getDomains() { return domains; }
+            public Collection<Constraint> getConstraints() { return constraints; }
+        });
+
+        Domain domain = new Domain(csp);
+        List<Propagator> propagators = new PropagatorFactory(csp).createAll(domain);
+        assertEquals(2, propagators.size());
+        for(Propagator propagator : propagators){
+            assertTrue(propagator.propagate(new StaticAssignment(csp.getVariableIndex()), domain) >= 0);
+        }
+
+        // x <= 6, y <= 4 and x + 2 <= y
+        assertEquals(0, csp.getValue(0, domain.first(0)));
+        assertEquals(2, csp.getValue(0, domain.last(0)));
+        assertEquals(2, csp.getValue(1, domain.first(1)));
+        assertEquals(4, csp.getValue(1, domain.last(1)));
+    }
+
+    public void testGeneralizedArcConsistency(){
+        Map<String, Set<Object>> domains = new HashMap<>();
+        for(String var : Arrays.asList("x", "y", "z")){
+            domains.put(var, new HashSet<>(Arrays.asList(0, 1, 2, 3)));
+        }
+
+        List<Constraint> constraints = Arrays.asList(
+                c.eq(c.plus(c.plus(c.v("x"), c.v("y")), c.v("z")), c.c(9)));
+        CompiledCSP csp = new CompiledCSP(new CSP() {
+            public List<String> getVariables() { return Arrays.asList("x", "y", "z"); }
+            public Map<String, Set<Object>> getDomains() { return domains; }
+            public Collection<Constraint> getConstraints() { return constraints; }
+        });
+
+        Domain domain = new Domain(csp);
+        List<Propagator> propagators = new PropagatorFactory(csp).createAll(domain);
+        assertEquals(1, propagators.size());
+        assertEquals(9, propagators.get(0).propagate(new StaticAssignment(csp.getVariableIndex()), domain));
+
+        // Only x + y + z = 3 + 3 + 3 remains
+        for(int var = 0; var < 3; ++var){
+            assertEquals(1, domain.size(var));
+            assertEquals(3, csp.getValue(var, domain.first(var)));
+        }
+    }
+
+    public void testDomainTrail(){
+        Set<Object> values = new HashSet<>();
+        for(int i = 0; i < 100; ++i){
+            values.add(i);
+        }
+
+        // Two words per domain, every operation has to be undone by the nested marks
+        CompiledCSP csp = compile(Arrays.asList("x", "y"), values, Collections.emptyList());
+        Domain domain = new Domain(csp);
+        int outer = domain.mark();
+        assertTrue(domain.remove(0, 70));
+        assertFalse(domain.remove(0, 70));
+        assertEquals(10, domain.removeBelow(1, 10));
+        assertEquals(90, domain.removeAbove(1, 9));
+        long[] kept = new long[2];
+        kept[1] = -1L;
+        assertEquals(64, domain.retain(0, kept));
+
+        int inner = domain.mark();
+        domain.assign(0, 99);
+        assertEquals(1, domain.size(0));
+        assertEquals(99, domain.first(0));
+        domain.assign(1, 3);
+        assertEquals(0, domain.size(1));
+
+        domain.restore(inner);
+        assertEquals(35, domain.size(0));
+        assertEquals(64, domain.first(0));
+        assertFalse(domain.contains(0, 70));
+        assertEquals(0, domain.size(1));
+        assertEquals(-1, domain.first(1));
+
+        domain.restore(outer);
+        for(int var = 0; var < 2; ++var){
+            assertEquals(100, domain.size(var));
+            assertEquals(0, domain.first(var));
+            assertEquals(99, domain.last(var));
+        }
+        assertTrue(domain.contains(0, 70));
+        assertEquals(outer, domain.mark());
+    }
+
+    public void testStaticAssignment(){
+        VariableIndex index = new VariableIndex(Arrays.asList("x", "y", "z"));
+        StaticAssignment assignment = new StaticAssignment(index);
+        assertEquals(3, assignment.getUnassignedCount());
+
+        assignment.set("y", 'A').set(0, 7);
+        assertEquals(2, assignment.size());
+        assertEquals(7, (int)assignment.getValue("x"));
+        assertEquals('A', assignment.getInt(1));
+        assertTrue(assignment.isAssigned(1));
+        assertFalse(assignment.isAssigned(2));
+        assertEquals(1, assignment.getUnassignedCount());
+        assertEquals(2, assignment.getUnassignedVariable(0));
+
+        // Unknown names are added to the index and grow the arrays
+        for(int i = 0; i < 10; ++i){
+            assignment.set("w" + i, i % 2 == 0);
+        }
+        assertEquals(13, index.size());
+        assertEquals(12, assignment.size());
+        assertEquals(1, assignment.getUnassignedCount());
+        assertEquals(1, assignment.getInt(index.getId("w4")));
+        assertEquals(0, assignment.getInt(index.getId("w5")));
+
+        assignment.reset("x").reset(index.getId("w3"));
+        assertNull(assignment.getValue("x"));
+        assertEquals(10, assignment.size());
+        Set<Integer> unassigned = new HashSet<>();
+        for(int i = 0; i < assignment.getUnassignedCount(); ++i){
+            unassigned.add(assignment.getUnassignedVariable(i));
+        }
+        assertEquals(new HashSet<>(Arrays.asList(0, 2, index.getId("w3"))), unassigned);
+        assertEquals(assignment.getValues().keySet(), new HashSet<>(assignment.getAssignedVariables()));
+        assertFalse(assignment.getAssignedVariables().contains("x"));
+
+        try {
+            assignment.reset("x");
+            fail();
+        } catch(InvalidParameterException ex){
+            // expected, x is not assigned
+        }
+
+        // Resetting in the reverse order of the assignments restores the order of the unassigned variables
+        StaticAssignment ordered = new StaticAssignment(new VariableIndex(Arrays.asList("a", "b", "c", "d", "e")));
+        ordered.set(1, 0).set(3, 0).set(0, 0);
+        ordered.reset(0).reset(3).reset(1);
+        for(int i = 0; i < 5; ++i){
+            assertEquals(i, ordered.getUnassignedVariable(i));
+        }
+    }
+
+    public void testArcQueue(){
+        List<Constraint> chain = Arrays.asList(c.lt(c.v("x"), c.v("y")), c.lt(c.v("y"), c.v("z")),
+                c.lt(c.v("z"), c.v("w")));
+        CompiledCSP csp = compile(Arrays.asList("x", "y", "z", "w"), range(6), chain);
+        Domain domain = new Domain(csp);
+        AC3 ac3 = createAC3(csp, domain, AC3.Mode.AC3);
+        Assignment assignment = new StaticAssignment(csp.getVariableIndex());
+
+        // x < y < z < w over 0..5 leaves three values for each
+        assertEquals(12, ac3.propagate(assignment, domain));
+        assertEquals(0, ac3.propagate(assignment, domain));
+        int mark = domain.mark();
+
+        // The change of w flows along the chain to x
+        domain.remove(3, 5);
+        assertEquals(3, ac3.propagate(assignment, domain));
+        for(int var = 0; var < 4; ++var){
+            assertEquals(2, domain.size(var));
+            assertEquals(var, domain.first(var));
+        }
+
+        // The queue state is restored with the domains, nothing changed since the first propagation
+        domain.restore(mark);
+        assertEquals(0, ac3.propagate(assignment, domain));
+        assertEquals(3, domain.size(0));
+        assertEquals(2, domain.last(0));
+
+        // Arcs to assigned variables are not revised, y would lose 2 and 3 otherwise
+        assignment.set(1, 2);
+        domain.remove(2, 3);
+        domain.remove(2, 4);
+        assertEquals(0, ac3.propagate(assignment, domain));
+        assertEquals(3, domain.size(1));
+
+        domain.remove(2, 2);
+        assertEquals(-1, ac3.propagate(assignment, domain));
+    }
+
+    public void testBinarySupports(){
+        List<Constraint> constraints = Arrays.asList(c.not(c.eq(c.v("x"), c.v("y"))));
+        for(int count : new int[]{ 100, 10000 }){
+            CompiledCSP csp = compile(Arrays.asList("x", "y"), new IntegerRange(0, count), constraints);
+            BinaryConstraintLookup lookup = new BinaryConstraintLookup(csp, Collections.singletonList(0));
+            BinarySupports supports = new BinarySupports(csp, lookup);
+
+            // Only the orientation from the lower variable id is stored
+            assertNull(supports.getMatrix(1));
+            long[][] matrix = supports.getMatrix(0);
+            if(count == 100){
+                assertEquals(100, matrix.length);
+                assertEquals(~(1L << 5), matrix[5][0]);
+                assertEquals((1L << 36) - 1, matrix[5][1]);
+                assertEquals((1L << 35) - 1, matrix[99][1]);
+            } else {
+                // 10^8 checks are over the budget, the constraint is evaluated instead
+                assertNull(matrix);
+            }
+
+            // Both ways of revising give the same domains
+            Domain domain = new Domain(csp);
+            domain.assign(1, 5);
+            AC3 ac3 = createAC3(csp, domain, AC3.Mode.AC3RM);
+            assertEquals(1, ac3.propagate(new StaticAssignment(csp.getVariableIndex()), domain));
+            assertEquals(count - 1, domain.size(0));
+            assertFalse(domain.contains(0, 5));
+        }
+    }
+
+    public void testConstraintEvaluator(){
+        List<Constraint> constraints = Arrays.asList(c.lt(c.v("x"), c.v("y")), c.lt(c.v("y"), c.v("z")));
+        CompiledCSP csp = compile(Arrays.asList("x", "y", "z"), range(3), constraints);
+        ConstraintEvaluator evaluator = new ConstraintEvaluator(csp);
+        Domain domain = new Domain(csp);
+        Assignment assignment = new StaticAssignment(csp.getVariableIndex());
+        assertFalse(evaluator.isIndependent(assignment, domain));
+
+        // x < y is only checked once y is assigned as well
+        assignment.set(0, 2);
+        evaluator.assign(0);
+        assertTrue(evaluator.isSatisfied(assignment, 0));
+        assignment.set(1, 1);
+        evaluator.assign(1);
+        assertFalse(evaluator.isSatisfied(assignment, 1));
+        assertEquals(0, evaluator.getViolatedConstraint());
+
+        // The counters follow the stack of assignments
+        evaluator.unassign(1);
+        assignment.reset(1);
+        evaluator.unassign(0);
+        assignment.reset(0);
+        for(int var : new int[]{ 2, 1 }){
+            assignment.set(var, var);
+            evaluator.assign(var);
+            assertTrue(evaluator.isSatisfied(assignment, var));
+            assertEquals(-1, evaluator.getViolatedConstraint());
+        }
+
+        // Only x is left, every value of its domain has to satisfy x < 1
+        assertFalse(evaluator.isIndependent(assignment, domain));
+        domain.assign(0, 0);
+        assertTrue(evaluator.isIndependent(assignment, domain));
+        assertFalse(assignment.isAssigned(0));
+    }
+
+    public void testPrunedDomains(){
+        List<Constraint> constraints = Arrays.asList(c.lt(c.v("x"), c.v("y")), c.not(c.eq(c.v("x"), c.v("z"))),
+                c.lt(c.plus(c.v("x"), c.c(2)), c.v("w")));
+        CompiledCSP csp = compile(Arrays.asList("x", "y", "z", "w"), range(5), constraints);
+        List<Integer> binary = Arrays.asList(0, 1, 2);
+        BinaryConstraintLookup lookup = new BinaryConstraintLookup(csp, binary);
+        ForwardChecking forwardChecking = new ForwardChecking(csp, lookup, new BinarySupports(csp, lookup),
+                new ConstraintWeights(csp.getConstraintCount()));
+        LeastConstrainingValueHeuristic heuristic = new LeastConstrainingValueHeuristic(csp, forwardChecking);
+        Domain domain = new Domain(csp);
+        Assignment assignment = new StaticAssignment(csp.getVariableIndex());
+
+        // x = 2, 3 and 4 wipe out the domain of w or y and are left out
+        PrunedDomains[] pruned = new PrunedDomains[5];
+        int[] values = heuristic.orderValues(0, domain, assignment, pruned);
+        assertEquals(new HashSet<>(Arrays.asList(0, 1)), new HashSet<>(Arrays.asList(values[0], values[1])));
+        assertEquals(2, values.length);
+        assertNull(pruned[2]);
+
+        // Applying the recorded domains matches a fresh forward checking of the value
+        for(int i = 0; i < values.length; ++i){
+            int mark = domain.mark();
+            assignment.set(0, values[i]);
+            domain.assign(0, values[i]);
+            int removed = pruned[i].apply(domain);
+            assertEquals(pruned[i].getRemovedCount(), removed);
+            List<Long> reused = getWords(domain, csp.getVariableCount());
+            domain.restore(mark);
+
+            domain.assign(0, values[i]);
+            assertEquals(removed, forwardChecking.execute(assignment, 0, values[i], domain));
+            List<Long> fresh = getWords(domain, csp.getVariableCount());
+            domain.restore(mark);
+            assignment.reset(0);
+            assertEquals(fresh, reused);
+        }
+    }
+
+    public void testSizeHeap(){
+        List<String> variables = new ArrayList<>();
+        for(int i = 0; i < 10; ++i){
+            variables.add("v" + i);
+        }
+
+        CompiledCSP csp = compile(variables, range(12), Collections.emptyList());
+        Domain domain = new Domain(csp);
+        MostConstrainedVariableHeuristic heuristic = new MostConstrainedVariableHeuristic();
+        heuristic.prepare(domain);
+        StaticAssignment assignment = new StaticAssignment(csp.getVariableIndex());
+
+        // Random removals and assignments under nested marks, checked against a scan after every step
+        Random random = new Random(7);
+        Deque<int[]> marks = new ArrayDeque<>();
+        Deque<Integer> assigned = new ArrayDeque<>();
+        for(int step = 0; step < 3000; ++step){
+            int operation = random.nextInt(10);
+            int var = assignment.getUnassignedVariable(random.nextInt(assignment.getUnassignedCount()));
+            if(operation < 2 && marks.size() < 10){
+                marks.push(new int[]{ domain.mark(), assigned.size() });
+            } else if(operation < 4 && !marks.isEmpty()){
+                int[] mark = marks.pop();
+                domain.restore(mark[0]);
+                while(assigned.size() > mark[1]){
+                    assignment.reset(assigned.pop());
+                }
+            } else if(operation < 5 && !marks.isEmpty() && assignment.getUnassignedCount() > 1){
+                domain.assign(var, domain.first(var));
+                assignment.set(var, domain.first(var));
+                assigned.push(var);
+            } else if(domain.size(var) > 1){
+                domain.remove(var, domain.values(var)[random.nextInt(domain.size(var))]);
+            }
+
+            SizeHeap heap = domain.getSizeHeap();
+            int expected = -1;
+            Set<Integer> tied = new HashSet<>();
+            for(int i = 0; i < assignment.getUnassignedCount(); ++i){
+                int unassigned = assignment.getUnassignedVariable(i);
+                if(expected < 0 || domain.size(unassigned) < domain.size(expected)){
+                    expected = unassigned;
+                    tied.clear();
+                } else if(domain.size(unassigned) == domain.size(expected) && unassigned < expected){
+                    expected = unassigned;
+                }
+                if(domain.size(unassigned) == domain.size(expected)){
+                    tied.add(unassigned);
+                }
+            }
+
+            assertEquals(assignment.getUnassignedCount(), heap.getCount());
+            assertEquals(expected, heap.first());
+            assertEquals(expected, heuristic.selectVariable(assignment, domain));
+            assertTrue(tied.contains(heap.sample(random)));
+        }
+
+        // The random ties reach every variable with the smallest domain
+        domain = new Domain(csp);
+        heuristic = new MostConstrainedVariableHeuristic(new Random(3));
+        heuristic.prepare(domain);
+        assignment = new StaticAssignment(csp.getVariableIndex());
+        Set<Integer> selected = new HashSet<>();
+        for(int i = 0; i < 500; ++i){
+            selected.add(heuristic.selectVariable(assignment, domain));
+        }
+        assertEquals(10, selected.size());
+        domain.remove(9, 0);
+        assertEquals(9, heuristic.selectVariable(assignment, domain));
+    }
+
+    public void testMostConstrainingVariable(){
+        // v0 has no constraint, v1 and v2 two, v3 three
+        CompiledCSP csp = compile(Arrays.asList("v0", "v1", "v2", "v3"), range(3), Arrays.asList(
+                c.lt(c.v("v1"), c.v("v3")), c.lt(c.v("v2"), c.v("v3")), c.lt(c.v("v1"), c.plus(c.v("v2"), c.v("v3")))));
+        Domain domain = new Domain(csp);
+        MostConstrainingVariableHeuristic heuristic = new MostConstrainingVariableHeuristic(csp);
+        heuristic.prepare(domain);
+        StaticAssignment assignment = new StaticAssignment(csp.getVariableIndex());
+        assertEquals(3, heuristic.selectVariable(assignment, domain));
+
+        // The cursor passes the assigned variables and goes back with the trail
+        int root = domain.mark();
+        assignment.set(3, 0);
+        assertEquals(1, heuristic.selectVariable(assignment, domain));
+        int mark = domain.mark();
+        assignment.set(1, 0);
+        assertEquals(2, heuristic.selectVariable(assignment, domain));
+        assignment.set(2, 0);
+        assertEquals(0, heuristic.selectVariable(assignment, domain));
+        assignment.set(0, 0);
+        assertEquals(-1, heuristic.selectVariable(assignment, domain));
+
+        domain.restore(mark);
+        assignment.reset(0);
+        assignment.reset(2);
+        assignment.reset(1);
+        assertEquals(1, heuristic.selectVariable(assignment, domain));
+        domain.restore(root);
+        assignment.reset(3);
+        assertEquals(3, heuristic.selectVariable(assignment, domain));
+
+        // A variable assigned out of order is skipped once the cursor reaches it
+        assignment.set(1, 0);
+        assertEquals(3, heuristic.selectVariable(assignment, domain));
+        assignment.set(3, 0);
+        assertEquals(2, heuristic.selectVariable(assignment, domain));
+
+        // The random ties stay within v1 and v2
+        heuristic = new MostConstrainingVariableHeuristic(csp, new Random(5));
+        heuristic.prepare(new Domain(csp));
+        assignment = new StaticAssignment(csp.getVariableIndex());
+        assignment.set(3, 0);
+        Set<Integer> selected = new HashSet<>();
+        for(int i = 0; i < 100; ++i){
+            selected.add(heuristic.selectVariable(assignment, domain));
+        }
+        assertEquals(new HashSet<>(Arrays.asList(1, 2)), selected);
+    }
+
+    // Board with two solutions shared by the tests of the solver configurations
+    private static final String SMALL_BOARD = "8,7\n#,2\n#,1,#,1\n#,1,#,1\n#,2\n#,2,#,1\n#,1,#,2,#,2\n#,4,#,1\n" +
+            "#,3\n#,2\n#,1,#,1\n#,2\n#,2,#,4\n#,1,#,1,#,2\n#,1,#,1,#,1,#,1\n#,2,#,2";
+    private static final String[] SMALL_BOARD_SOLUTIONS = {
+            "___##__\n___#_#_\n____#_#\n_____##\n##_#___\n#_##_##\n_####_#\n___###_",
+            "____##_\n___#__#\n___#__#\n____##_\n##_#___\n#_##_##\n_####_#\n___###_"
+    };
+
+    private static Board smallBoard() throws IOException{
+        return Parser.readBoard(SMALL_BOARD);
+    }
+
+    private static void assertSolvesSmallBoard(SolverConfiguration configuration) throws IOException{
+        assertSolvesSmallBoard(csp -> new BacktrackingSolver(csp, configuration));
+    }
+
+    /***
+     * Solves the small board with both models and checks the solutions against the reference solutions.
+     * Only a smoke check that a configuration still solves a board, each test asserts the behaviour of its feature on its own.
+     */
+    private static void assertSolvesSmallBoard(Function<CSP, Solver> solver) throws IOException{
+        assertSmallBoardSolutions(solver.apply(new ColorBoardCSPBinary(smallBoard())).solve());
+        assertSmallBoardSolutions(solver.apply(new ColorBoardCSP(smallBoard())).solve());
+    }
+
+    /***
+     * Compares the pixels of the solutions with the reference solutions of the small board
+     */
+    private static void assertSmallBoardSolutions(Collection<Solution> solutions) throws IOException{
+        Board board = smallBoard();
+        Set<List<Object>> expected = new HashSet<>();
+        for(String filled : SMALL_BOARD_SOLUTIONS){
+            Assignment assignment = fromBoard(board, Parser.readSolution(filled));
+            expected.add(getPixels(board, assignment::getValue));
+        }
+
+        Set<List<Object>> actual = new HashSet<>();
+        for(Solution solution : solutions){
+            actual.add(getPixels(board, solution::get));
+        }
+
+        assertEquals(expected.size(), solutions.size());
+        assertEquals(expected, actual);
+    }
+
+    private static List<Object> getPixels(Board board, Function<String, Object> values){
+        List<Object> pixels = new ArrayList<>();
+        for(int i = 0; i < board.getColls(); ++i){
+            for(int j = 0; j < board.getRows(); ++j){
+                pixels.add(values.apply("b" + i + ":" + j));
+            }
+        }
+
+        return pixels;
+    }
+
+    private static Set<Object> range(int count){
+        Set<Object> values = new HashSet<>();
+        for(int i = 0; i < count; ++i){
+            values.add(i);
+        }
+
+        return values;
+    }
+
+    private static AC3 createAC3(CompiledCSP csp, Domain domain, AC3.Mode mode){
+        List<Integer> constraints = new ArrayList<>();
+        for(int constr = 0; constr < csp.getConstraintCount(); ++constr){
+            constraints.add(constr);
+        }
+
+        BinaryConstraintLookup lookup = new BinaryConstraintLookup(csp, constraints);
+        return new AC3(csp, lookup, new BinarySupports(csp, lookup),
+                new ConstraintWeights(csp.getConstraintCount()), mode, domain.getTrail());
+    }
+
+    private static List<Long> getWords(Domain domain, int variableCount){
+        List<Long> words = new ArrayList<>();
+        for(int var = 0; var < variableCount; ++var){
+            for(long word : domain.copyValues(var)){
+                words.add(word);
+            }
+        }
+
+        return words;
+    }
+
+    private static CompiledCSP compile(List<String> variables, Set<Object> values, List<Constraint> constraints){
+        Map<String, Set<Object>> domains = new HashMap<>();
+        for(String var : variables){
+            domains.put(var, values);
+        }
+
+        return new CompiledCSP(new CSP() {
+            public List<String> getVariables() { return variables; }
+            public Map<String, Set<Object>> getDomains() { return domains; }
+            public Collection<Constraint> getConstraints() { return constraints; }
+        });
+    }
+
     private void assertAllSolutionsCorrect(List<Solution> solutions, Collection<Solution> correctSolutions) {
         for(Solution sol : solutions){
             assertSolutionCorrect(sol, correctSolutions);
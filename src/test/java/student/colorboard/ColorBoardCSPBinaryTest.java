@@ -2,11 +2,14 @@ package student.colorboard;
 
 import junit.framework.TestCase;
 import student.Assignment;
+import student.CompiledCSP;
 import student.StaticAssignment;
+import student.constraints.CompiledConstraint;
 import student.constraints.Constraint;
 
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class ColorBoardCSPBinaryTest extends TestCase {
 
@@ -102,6 +105,186 @@ public class ColorBoardCSPBinaryTest extends TestCase {
         assertEquals(1, solutions.size());
     }
 
+    public void testTableEncoding() throws IOException{
+        String boardStr = "8,7\n" +
+                "#,2\n" +
+                "#,1,#,1\n" +
+                "#,1,#,1\n" +
+                "#,2\n" +
+                "#,2,#,1\n" +
+                "#,1,#,2,#,2\n" +
+                "#,4,#,1\n" +
+                "#,3\n" +
+                "#,2\n" +
+                "#,1,#,1\n" +
+                "#,2\n" +
+                "#,2,#,4\n" +
+                "#,1,#,1,#,2\n" +
+                "#,1,#,1,#,1,#,1\n" +
+                "#,2,#,2";
+
+        Board board = Parser.readBoard(boardStr);
+        List<char[][]> binarySolutions = new ColorBoardCSPBinary(board, LineEncoding.BINARY).solve();
+        List<char[][]> tableSolutions = new ColorBoardCSPBinary(board, LineEncoding.TABLE).solve();
+
+        assertEquals(2, tableSolutions.size());
+        assertEquals(binarySolutions.size(), tableSolutions.size());
+        for(char[][] solution : tableSolutions){
+            boolean any = false;
+            for(char[][] other : binarySolutions){
+                any |= Arrays.deepEquals(solution, other);
+            }
+            assertTrue(any);
+        }
+    }
+
+    public void testLineEncoding() throws IOException{
+        String boardStr = "11,11\nG,1\nG,2\nR,4,G,1,R,4\nR,8,Y,1,R,2\nR,3,Y,1,R,7\nR,6,Y,1,R,2\nR,9\n" +
+                "R,2,Y,1,R,4\nR,7\nR,2,Y,1,R,2\nR,3\nR,2\nR,5\nR,7\nR,2,Y,1,R,5\nR,5,Y,1,R,3\n" +
+                "G,2,R,6,Y,1,R,1\nG,2,R,9\nR,3,Y,1,R,4\nR,1,Y,1,R,5\nR,5\nR,2";
+
+        Board board = Parser.readBoard(boardStr);
+        List<char[][]> tableSolutions = new ColorBoardCSPBinary(board, LineEncoding.TABLE).solve();
+        List<char[][]> lineSolutions = new ColorBoardCSPBinary(board, LineEncoding.LINE).solve();
+        assertEquals(1, lineSolutions.size());
+        assertEquals(tableSolutions.size(), lineSolutions.size());
+        assertTrue(Arrays.deepEquals(tableSolutions.get(0), lineSolutions.get(0)));
+
+        // 45 touching blocks in a line of 90 pixels, too many configurations to enumerate
+        StringBuilder wideBoard = new StringBuilder("1,90\n");
+        StringBuilder columns = new StringBuilder();
+        StringBuilder expected = new StringBuilder();
+        for(int i = 0; i < 90; ++i){
+            char color = i < 45 ? (i % 2 == 0 ? 'R' : 'G') : '_';
+            wideBoard.append(i < 45 ? (i > 0 ? "," : "") + color + ",1" : "");
+            columns.append(i < 45 ? color + ",1" : "").append("\n");
+            expected.append(color);
+        }
+        wideBoard.append("\n").append(columns);
+
+        List<char[][]> wideSolutions = new ColorBoardCSPBinary(Parser.readBoard(wideBoard.toString()), LineEncoding.LINE).solve();
+        assertEquals(1, wideSolutions.size());
+        assertEquals(expected.toString(), new String(wideSolutions.get(0)[0]));
+    }
+
+    public void testRegularEncoding() throws IOException{
+        String boardStr = "8,7\n#,2\n#,1,#,1\n#,1,#,1\n#,2\n#,2,#,1\n#,1,#,2,#,2\n#,4,#,1\n" +
+                "#,3\n#,2\n#,1,#,1\n#,2\n#,2,#,4\n#,1,#,1,#,2\n#,1,#,1,#,1,#,1\n#,2,#,2";
+
+        Board board = Parser.readBoard(boardStr);
+        List<char[][]> lineSolutions = new ColorBoardCSPBinary(board, LineEncoding.LINE).solve();
+        List<char[][]> regularSolutions = new ColorBoardCSPBinary(board, LineEncoding.REGULAR).solve();
+        assertEquals(2, regularSolutions.size());
+        for(char[][] solution : regularSolutions){
+            boolean any = false;
+            for(char[][] other : lineSolutions){
+                any |= Arrays.deepEquals(solution, other);
+            }
+            assertTrue(any);
+        }
+
+        // Blocks of different colours may touch, blocks of the same colour may not
+        Board touching = Parser.readBoard("1,5\nR,2,G,1,R,1\nR,1\nR,1\nG,1\n\nR,1\n");
+        List<char[][]> solutions = new ColorBoardCSPBinary(touching, LineEncoding.REGULAR).solve();
+        assertEquals(1, solutions.size());
+        assertEquals("RRG_R", new String(solutions.get(0)[0]));
+    }
+
+    public void testBlockLineConstraint() throws IOException{
+        String[] boards = { "8,7\n#,2\n#,1,#,1\n#,1,#,1\n#,2\n#,2,#,1\n#,1,#,2,#,2\n#,4,#,1\n" +
+                "#,3\n#,2\n#,1,#,1\n#,2\n#,2,#,4\n#,1,#,1,#,2\n#,1,#,1,#,1,#,1\n#,2,#,2",
+                "5,2\n^,1\n\n^,1\n^,1\n*,1\n^,1,^,2,*,1\n" };
+
+        for(String boardStr : boards){
+            CompiledCSP csp = new CompiledCSP(new ColorBoardCSPBinary(Parser.readBoard(boardStr)));
+            StaticAssignment assignment = new StaticAssignment(csp.getVariableIndex());
+            for(int i = 0; i < csp.getConstraintCount(); ++i){
+                Constraint constraint = csp.getConstraint(i);
+                assertTrue(constraint instanceof CompiledConstraint);
+                Constraint source = ((CompiledConstraint)constraint).getSource();
+                assertTrue(source instanceof BlockLineConstraint);
+
+                // Every pair of values of the line and the pixel
+                int first = csp.getScope(i)[0];
+                int second = csp.getScope(i)[1];
+                for(int x = 0; x < csp.getValueCount(first); ++x){
+                    for(int y = 0; y < csp.getValueCount(second); ++y){
+                        assignment.set(first, csp.getValue(first, x));
+                        assignment.set(second, csp.getValue(second, y));
+                        assertEquals(source.evaluate(assignment), constraint.evaluate(assignment));
+                    }
+                }
+            }
+        }
+    }
+
+    public void testLineConfigurations(){
+        // R,2 R,1 G,1 in 7 cells, the two red blocks need a gap between them
+        List<Block> blocks = Arrays.asList(new Block('R', 2, 0), new Block('R', 1, 1), new Block('G', 1, 2));
+        LineConfigurations configurations = new LineConfigurations(blocks, 7, '_');
+        assertEquals(10, configurations.size());
+        assertEquals("RR_RG__", new String(configurations.create(0)));
+        assertEquals("__RR_RG", new String(configurations.create(9)));
+
+        Set<String> lines = new HashSet<>();
+        for(int index = 0; index < configurations.size(); ++index){
+            assertEquals(index, configurations.indexOf(configurations.getOffsets(index)));
+            assertTrue(lines.add(new String(configurations.create(index))));
+        }
+
+        // The small lines are packed up front from the shared budget, two bits per cell with two colours,
+        // four bits with four colours. The large one packs its blocks while the budget lasts,
+        // its samples reach far more blocks than the budget packs.
+        AtomicLong budget = new AtomicLong(1 << 17);
+        LineConfigurations small = new LineConfigurations(blocks, 7, '_', budget);
+        assertEquals((1 << 17) - (10 * 7 * 2 + 63) / 64, budget.get());
+        List<Block> colorful = Arrays.asList(new Block('R', 2, 0), new Block('G', 1, 1), new Block('B', 1, 2),
+                new Block('Y', 3, 3));
+        LineConfigurations fourColors = new LineConfigurations(colorful, 12, '_', budget);
+        assertEquals((1 << 17) - (10 * 7 * 2 + 63) / 64 - (fourColors.size() * 12 * 4 + 63) / 64, budget.get());
+
+        List<Block> alternating = new ArrayList<>();
+        for(int j = 0; j < 10; ++j){
+            alternating.add(new Block(j % 2 == 0 ? 'R' : 'G', 1, j));
+        }
+        LineConfigurations large = new LineConfigurations(alternating, 40, '_', budget);
+        assertTrue(large.size() > 1 << 28);
+
+        Random random = new Random(7);
+        for(LineConfigurations line : Arrays.asList(configurations, small, fourColors, large)){
+            for(int sample = 0; sample < 2000; ++sample){
+                int index = line == large ? random.nextInt(line.size()) : sample % line.size();
+                char[] cells = line.create(index);
+                List<Set<Object>> cellColors = new ArrayList<>();
+                for(int cell = 0; cell < cells.length; ++cell){
+                    assertEquals(cells[cell], line.getColor(index, cell));
+                    for(char color : "_RGBY".toCharArray()){
+                        assertEquals(cells[cell] == color, line.hasColor(index, cell, color));
+                    }
+                    cellColors.add(new HashSet<>(Arrays.asList('_', 'R', 'G', 'B', 'Y')));
+                }
+
+                // Forbidding a colour of another cell keeps the agreement, forbidding its own colour breaks it
+                int cell = sample % cells.length;
+                cellColors.get(cell).remove(cells[cell] == 'R' ? 'G' : 'R');
+                assertTrue(line.agrees(index, line.getCellMasks(cellColors)));
+                cellColors.get(cell).remove(cells[cell]);
+                assertFalse(line.agrees(index, line.getCellMasks(cellColors)));
+            }
+        }
+
+        // The samples packed blocks of the large line until the budget ran out, 1280 words each
+        assertTrue(budget.get() < 1280);
+        assertTrue(budget.get() >= 0);
+
+        // Far more configurations than ids, they are only counted
+        List<Block> many = new ArrayList<>();
+        for(int j = 0; j < 30; ++j){
+            many.add(new Block(j % 2 == 0 ? 'R' : 'G', 1, j));
+        }
+        assertTrue(new LineConfigurations(many, 100, '_').count() > Integer.MAX_VALUE);
+    }
+
 
     private static Assignment fromBoard(Board board, char[][] solution){
         Assignment ass = new StaticAssignment();